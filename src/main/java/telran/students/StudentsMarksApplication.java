@@ -2,8 +2,12 @@ package telran.students;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+
+import telran.students.configuration.StudentsRuntimeHints;
 
 @SpringBootApplication
+@ImportRuntimeHints(StudentsRuntimeHints.class)
 public class StudentsMarksApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,19 @@
+package telran.students.configuration;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import telran.students.service.QueryExecutor;
+import telran.students.service.SequentialQueryExecutor;
+
+//sequential queries unless another executor is enabled: StructuredQueryExecutor exists only in the Java 21 build,
+//so spring.threads.virtual.enabled=true on the Java 17 build falls back to the sequential one
+@Configuration
+public class QueryExecutorEnabler {
+	@Bean
+	@ConditionalOnMissingBean(QueryExecutor.class)
+	QueryExecutor getQueryExecutor() {
+		return new SequentialQueryExecutor();
+	}
+}
@@ -0,0 +1,29 @@
+package telran.students.configuration;
+
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+import org.springframework.data.projection.TargetAware;
+
+import telran.students.dto.*;
+
+//hints for GraalVM native image: projections of StudentRepo are JDK proxies created by Spring Data
+//at runtime, records embedded into the documents (marks, summaries of the archived marks) are created
+//and read by the Mongo mapping through reflection
+public class StudentsRuntimeHints implements RuntimeHintsRegistrar {
+	static final Class<?>[] PROJECTIONS = { IdName.class, IdNamePhone.class, MarksOnly.class };
+	static final Class<?>[] RECORDS = { Mark.class, MarksSummary.class };
+
+	@Override
+	public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+		for (Class<?> projection : PROJECTIONS) {
+			hints.proxies().registerJdkProxy(AopProxyUtils.completeJdkProxyInterfaces(projection, TargetAware.class));
+			hints.reflection().registerType(projection, MemberCategory.INVOKE_PUBLIC_METHODS);
+		}
+		hints.reflection().registerTypes(TypeReference.listOf(RECORDS),
+				builder -> builder.withMembers(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+						MemberCategory.INVOKE_PUBLIC_METHODS, MemberCategory.DECLARED_FIELDS));
+	}
+}
@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public record ArchiveResult(long students, long marks) {
+
+}
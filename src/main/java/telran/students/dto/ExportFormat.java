@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public enum ExportFormat {
+	NDJSON, CSV
+}
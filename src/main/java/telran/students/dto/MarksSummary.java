@@ -0,0 +1,12 @@
+package telran.students.dto;
+
+public record MarksSummary(String subject, String period, int count, long sum, int min, int max) {
+	public static MarksSummary of(Mark mark, String period) {
+		return new MarksSummary(mark.subject(), period, 1, mark.score(), mark.score(), mark.score());
+	}
+
+	public MarksSummary merge(MarksSummary other) {
+		return new MarksSummary(subject, period, count + other.count, sum + other.sum, Math.min(min, other.min),
+				Math.max(max, other.max));
+	}
+}
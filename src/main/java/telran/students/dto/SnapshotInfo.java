@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public record SnapshotInfo(int partitions, long students, long bytes) {
+
+}
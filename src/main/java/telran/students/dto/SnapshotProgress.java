@@ -0,0 +1,7 @@
+package telran.students.dto;
+
+public record SnapshotProgress(String operation, long processed, long total) {
+	public double ratio() {
+		return total == 0 ? 1 : (double) processed / total;
+	}
+}
@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public record StudentAddedEvent(long id, String name) {
+
+}
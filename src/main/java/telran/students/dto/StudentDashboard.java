@@ -0,0 +1,8 @@
+package telran.students.dto;
+
+import java.util.List;
+
+//rank is position by average score among the students having marks (1 - the best), 0 if no marks
+public record StudentDashboard(Student student, List<Mark> marks, Double avgScore, long rank) {
+
+}
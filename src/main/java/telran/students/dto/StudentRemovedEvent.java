@@ -0,0 +1,5 @@
+package telran.students.dto;
+
+public record StudentRemovedEvent(long id) {
+
+}
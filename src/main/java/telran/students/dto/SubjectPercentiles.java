@@ -0,0 +1,6 @@
+package telran.students.dto;
+
+//median and p90 are null if there are no scores
+public record SubjectPercentiles(String subject, long count, Double median, Double p90) {
+
+}
@@ -0,0 +1,22 @@
+package telran.students.model;
+
+import java.time.LocalDate;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+
+//last student processed by the marks archiving job, an unfinished run with the same horizon is resumed from it;
+//archivedHorizon is the latest horizon of all the runs - marks before it may be in the archive
+@Document(collection = "archive_jobs")
+@Getter
+@AllArgsConstructor
+public class ArchiveJobState {
+	@Id
+	String id;
+	LocalDate horizon;
+	long lastStudentId;
+	boolean finished;
+	LocalDate archivedHorizon;
+}
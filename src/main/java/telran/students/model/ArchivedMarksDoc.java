@@ -0,0 +1,27 @@
+package telran.students.model;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+import telran.students.dto.Mark;
+
+//marks of a student moved out of StudentDoc by one archiving run;
+//id is built from the student id and the archiving sequence number of the student, so repeating
+//an interrupted run overwrites the same document
+@Document(collection = "marks_archive")
+@Getter
+@AllArgsConstructor
+public class ArchivedMarksDoc {
+	@Id
+	String id;
+	long studentId;
+	long seq;
+	List<Mark> marks;
+
+	public static ArchivedMarksDoc of(long studentId, long seq, List<Mark> marks) {
+		return new ArchivedMarksDoc(studentId + "-" + seq, studentId, seq, marks);
+	}
+}
@@ -0,0 +1,37 @@
+package telran.students.model;
+
+import java.util.List;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import lombok.*;
+
+//serialized t-digest of the scores of one subject in one month;
+//new scores are pushed into pending and folded into the digest periodically (pending is moved into folding
+//first, foldSeq is incremented by every move); scores of a month are spread over several shards
+//to reduce contention of the concurrent updates
+@Document(collection = "scores_sketches")
+@Getter
+@AllArgsConstructor
+public class ScoresSketchDoc {
+	@Id
+	String id;
+	String subject;
+	String month;
+	@Setter
+	long count;
+	@Setter
+	byte[] digest;
+	List<Integer> pending;
+	List<Integer> folding;
+	long foldSeq;
+
+	public static ScoresSketchDoc of(String subject, String month, int shard) {
+		return new ScoresSketchDoc(getId(subject, month, shard), subject, month, 0, null, null, null, 0);
+	}
+
+	public static String getId(String subject, String month, int shard) {
+		return String.format("%s|%s|%d", subject, month, shard);
+	}
+}
@@ -20,6 +20,11 @@ public class StudentDoc {
 	@Setter
 	String phone;
 	List<Mark> marks;
+	//rollups of the marks moved into marks_archive (see MarksArchiveService)
+	@Setter
+	List<MarksSummary> summaries;
+	@Setter
+	long archiveSeq;
 	
 	public void addMark(Mark mark) {
 		marks.add(mark);
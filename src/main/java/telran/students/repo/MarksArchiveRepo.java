@@ -0,0 +1,9 @@
+package telran.students.repo;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import telran.students.model.ArchivedMarksDoc;
+
+public interface MarksArchiveRepo extends MongoRepository<ArchivedMarksDoc, String> {
+	void deleteByStudentId(long studentId);
+}
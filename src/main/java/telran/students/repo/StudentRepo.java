@@ -1,5 +1,6 @@
 package telran.students.repo;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
@@ -21,21 +22,32 @@ public interface StudentRepo extends MongoRepository<StudentDoc, Long> {
 	//************************************
 	List<IdNamePhone> findByPhoneRegex(String string);
 	//************************************
-	@Query(value="{$and:[{marks: {$elemMatch:{score:{$gt:?0}}}}, {marks: {$not:{$elemMatch:{score:{$lte:?0}}}}}]}")
+	//archived marks are taken into account through the summaries (count, min)
+	@Query(value="{$and:[{$or:[{marks: {$elemMatch:{score:{$gt:?0}}}}, {summaries: {$elemMatch:{min:{$gt:?0}}}}]},"
+			+ " {marks: {$not:{$elemMatch:{score:{$lte:?0}}}}}, {summaries: {$not:{$elemMatch:{min:{$lte:?0}}}}}]}")
 	List<IdNamePhone> findByGoodMarks(int thresholdScore);
 	//************************************
-	@Query(value="{$expr:{$lt:[{$size: $marks}, ?0]}}", delete=true)
+	@Query(value="{$expr:{$lt:[{$add:[{$size: '$marks'}, {$sum: '$summaries.count'}]}, ?0]}}", delete=true)
 	List<IdNamePhone> findByFewMarks(int threshold);
 	//*************************************
 //	@Query(value="{$and:[{marks: {$elemMatch: {subject: ?0}}}, {marks:{$elemMatch: {score: {$gte:?1} }}}]}")
-	@Query(value="{$and:[{marks: {$elemMatch:{subject: ?0,score:{$gte:?1}}}},"
-			+ " {marks: {$not:{$elemMatch:{subject: ?0,score:{$lt:?1}}}}}]}")
+	@Query(value="{$and:[{$or:[{marks: {$elemMatch:{subject: ?0,score:{$gte:?1}}}},"
+			+ " {summaries: {$elemMatch:{subject: ?0,min:{$gte:?1}}}}]},"
+			+ " {marks: {$not:{$elemMatch:{subject: ?0,score:{$lt:?1}}}}},"
+			+ " {summaries: {$not:{$elemMatch:{subject: ?0,min:{$lt:?1}}}}}]}")
 	List<IdNamePhone> findStudentsAllGoodMarksSubject(String subject, int thresholdScore);
 	//*************************************
-	@Query(value="{$expr:{$and:[{$gte: [{$size: $marks}, ?0]},{$lte: [{$size: $marks}, ?1]}]}}")
+	@Query(value="{$expr:{$and:[{$gte: [{$add:[{$size: '$marks'}, {$sum: '$summaries.count'}]}, ?0]},"
+			+ "{$lte: [{$add:[{$size: '$marks'}, {$sum: '$summaries.count'}]}, ?1]}]}}")
 	List<IdNamePhone> findStudentsMarksAmountBetween (int min, int max);
 	//*************************************
 	
 	MarksOnly findByIdAndMarksSubject(long id, String subject);
+	//*************************************
+	IdName findFirstByOrderByIdAsc();
+
+	IdName findFirstByOrderByIdDesc();
+	//*************************************
+	List<IdNamePhone> findByIdIn(Collection<Long> ids);
 
 }
@@ -0,0 +1,31 @@
+package telran.students.service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import telran.students.dto.IdName;
+import telran.students.repo.StudentRepo;
+
+//closed range of students ids; used for splitting the students collection into partitions
+//which are read in parallel, each one with its own cursor
+record IdRange(long from, long to) {
+	Criteria criteria() {
+		return Criteria.where("id").gte(from).lte(to);
+	}
+
+	static List<IdRange> split(StudentRepo studentRepo, int nPartitions) {
+		IdName first = studentRepo.findFirstByOrderByIdAsc();
+		List<IdRange> res = new ArrayList<>();
+		if (first != null) {
+			long min = first.getId();
+			long max = studentRepo.findFirstByOrderByIdDesc().getId();
+			long size = Math.max(1, (max - min) / nPartitions + 1);
+			for (long from = min; from <= max && from >= min; from += size) {
+				res.add(new IdRange(from, Math.min(max, from + size - 1)));
+			}
+		}
+		return res;
+	}
+}
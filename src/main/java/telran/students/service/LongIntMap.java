@@ -0,0 +1,119 @@
+package telran.students.service;
+
+import java.util.Arrays;
+
+//open addressing hash map of primitive long keys and non-negative int values (linear probing,
+//backward shift deletion); no boxing - the students ids and the trigrams of TrigramIndex
+class LongIntMap {
+	static final int NO_VALUE = -1;
+	static final int MIN_CAPACITY = 16;
+	static final double MAX_LOAD_FACTOR = 0.5;
+	long[] keys;
+	int[] values;
+	boolean[] used;
+	int mask;
+	int size;
+
+	LongIntMap() {
+		this(MIN_CAPACITY);
+	}
+
+	LongIntMap(int expectedSize) {
+		int capacity = Integer.highestOneBit(Math.max(MIN_CAPACITY, (int) (expectedSize / MAX_LOAD_FACTOR)) - 1) << 1;
+		allocate(capacity);
+	}
+
+	int get(long key) {
+		int index = find(key);
+		return index < 0 ? NO_VALUE : values[index];
+	}
+
+	void put(long key, int value) {
+		int index = slot(key);
+		while (used[index]) {
+			if (keys[index] == key) {
+				values[index] = value;
+				return;
+			}
+			index = (index + 1) & mask;
+		}
+		used[index] = true;
+		keys[index] = key;
+		values[index] = value;
+		if (++size > MAX_LOAD_FACTOR * keys.length) {
+			resize(keys.length << 1);
+		}
+	}
+
+	int remove(long key) {
+		int gap = find(key);
+		if (gap < 0) {
+			return NO_VALUE;
+		}
+		int res = values[gap];
+		// entries following the removed one are moved back unless it breaks their probe sequence
+		int index = (gap + 1) & mask;
+		while (used[index]) {
+			int home = slot(keys[index]);
+			if (((index - home) & mask) >= ((index - gap) & mask)) {
+				keys[gap] = keys[index];
+				values[gap] = values[index];
+				gap = index;
+			}
+			index = (index + 1) & mask;
+		}
+		used[gap] = false;
+		size--;
+		return res;
+	}
+
+	int size() {
+		return size;
+	}
+
+	void clear() {
+		Arrays.fill(used, false);
+		size = 0;
+	}
+
+	private int find(long key) {
+		int index = slot(key);
+		while (used[index]) {
+			if (keys[index] == key) {
+				return index;
+			}
+			index = (index + 1) & mask;
+		}
+		return -1;
+	}
+
+	private int slot(long key) {
+		long hash = key * 0x9E3779B97F4A7C15L;
+		return (int) (hash ^ (hash >>> 32)) & mask;
+	}
+
+	private void resize(int capacity) {
+		long[] oldKeys = keys;
+		int[] oldValues = values;
+		boolean[] oldUsed = used;
+		allocate(capacity);
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldUsed[i]) {
+				int index = slot(oldKeys[i]);
+				while (used[index]) {
+					index = (index + 1) & mask;
+				}
+				used[index] = true;
+				keys[index] = oldKeys[i];
+				values[index] = oldValues[i];
+			}
+		}
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new int[capacity];
+		used = new boolean[capacity];
+		mask = capacity - 1;
+	}
+}
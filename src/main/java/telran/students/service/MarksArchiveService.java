@@ -0,0 +1,25 @@
+package telran.students.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import telran.students.dto.*;
+
+public interface MarksArchiveService {
+//moves marks older than the horizon from StudentDoc.marks into the marks_archive collection
+//leaving per subject / per month rollups (count, sum, min, max) in StudentDoc.summaries
+//students are processed in batches ordered by id with a pause between the batches;
+//an interrupted run is resumed from the last processed batch by the next run with the same horizon
+	ArchiveResult archiveMarks(LocalDate horizon);
+
+//the same with the configured horizon (now minus students.marks.archive.horizon.days), runs on schedule
+	ArchiveResult archiveMarks();
+
+//marks before this date may be found in the archive: the latest horizon of all the runs kept in archive_jobs
+//(LocalDate.MIN if nothing was archived)
+	LocalDate getHorizon();
+
+	List<Mark> getArchivedMarks(long id, LocalDate from, LocalDate to);
+
+	void removeArchivedMarks(long id);
+}
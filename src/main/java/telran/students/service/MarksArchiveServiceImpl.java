@@ -0,0 +1,208 @@
+package telran.students.service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.MatchOperation;
+import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
+import org.springframework.data.mongodb.core.aggregation.SortOperation;
+import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.result.UpdateResult;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.*;
+import telran.students.model.ArchiveJobState;
+import telran.students.model.ArchivedMarksDoc;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarksArchiveRepo;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MarksArchiveServiceImpl implements MarksArchiveService {
+	static final String JOB_ID = "marks-archive";
+	static final DateTimeFormatter PERIOD_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+	final MongoTemplate mongoTemplate;
+	final MarksArchiveRepo marksArchiveRepo;
+	@Value("${students.marks.archive.horizon.days:365}")
+	int horizonDays;
+	@Value("${students.marks.archive.batch.size:500}")
+	int batchSize;
+	@Value("${students.marks.archive.pause.ms:100}")
+	long pauseMs;
+	private final AtomicBoolean running = new AtomicBoolean();
+
+	@Override
+	@Scheduled(cron = "${students.marks.archive.cron:0 0 3 * * *}")
+	public ArchiveResult archiveMarks() {
+		return archiveMarks(getConfiguredHorizon());
+	}
+
+	@Override
+	public ArchiveResult archiveMarks(LocalDate horizon) {
+		if (!running.compareAndSet(false, true)) {
+			throw new IllegalStateException("marks archiving is already running");
+		}
+		try {
+			ArchiveJobState state = mongoTemplate.findById(JOB_ID, ArchiveJobState.class);
+			long lastId = Long.MIN_VALUE;
+			if (state != null && !state.isFinished() && horizon.equals(state.getHorizon())) {
+				lastId = state.getLastStudentId();
+				log.info("resuming marks archiving after student {}", lastId);
+			}
+			// before any mark is moved, so that readers (of any instance) look into the archive
+			mongoTemplate.upsert(new Query(Criteria.where("id").is(JOB_ID)),
+					new Update().max("archivedHorizon", horizon), ArchiveJobState.class);
+			long nStudents = 0;
+			long nMarks = 0;
+			List<StudentDoc> batch;
+			while (!(batch = getBatch(lastId, horizon)).isEmpty()) {
+				for (StudentDoc studentDoc : batch) {
+					int archived = archiveStudent(studentDoc, horizon);
+					if (archived > 0) {
+						nStudents++;
+						nMarks += archived;
+					}
+				}
+				lastId = batch.get(batch.size() - 1).getId();
+				saveProgress(horizon, lastId, false);
+				log.debug("archived marks of students up to {}", lastId);
+				pause();
+			}
+			saveProgress(horizon, lastId, true);
+			ArchiveResult res = new ArchiveResult(nStudents, nMarks);
+			log.info("marks before {} archived: {}", horizon, res);
+			return res;
+		} finally {
+			running.set(false);
+		}
+	}
+
+	@Override
+	public LocalDate getHorizon() {
+		Query query = new Query(Criteria.where("id").is(JOB_ID));
+		query.fields().include("archivedHorizon");
+		ArchiveJobState state = mongoTemplate.findOne(query, ArchiveJobState.class);
+		return state == null || state.getArchivedHorizon() == null ? LocalDate.MIN : state.getArchivedHorizon();
+	}
+
+	@Override
+	public List<Mark> getArchivedMarks(long id, LocalDate from, LocalDate to) {
+		MatchOperation matchStudent = Aggregation.match(Criteria.where("studentId").is(id));
+		SortOperation sortOperation = Aggregation.sort(Direction.ASC, "seq");
+		UnwindOperation unwindOperation = Aggregation.unwind("marks");
+		MatchOperation matchDates = Aggregation.match(Criteria.where("marks.date").gte(from).lte(to));
+		ProjectionOperation projectionOperation = Aggregation.project("marks.score", "marks.date", "marks.subject");
+		List<AggregationOperation> operations = new ArrayList<>(List.of(matchStudent));
+		operations.addAll(getCommittedArchiveOperations());
+		operations.addAll(List.of(sortOperation, unwindOperation, matchDates, projectionOperation));
+		Aggregation pipeline = Aggregation.newAggregation(operations);
+		List<Document> listDocuments = mongoTemplate.aggregate(pipeline, ArchivedMarksDoc.class, Document.class)
+				.getMappedResults();
+		log.debug("archived listDocuments: {}", listDocuments);
+		return listDocuments.stream()
+				.map(d -> new Mark(d.getString("subject"),
+						d.getDate("date").toInstant().atZone(ZoneId.systemDefault()).toLocalDate(),
+						d.getInteger("score")))
+				.toList();
+	}
+
+	// leaves the archive documents of the committed runs only: the student update of a run increments
+	// archiveSeq; a document whose student update missed or never happened has seq not less than
+	// archiveSeq of the student (its marks are still in StudentDoc.marks) and is overwritten by the next run
+	static List<AggregationOperation> getCommittedArchiveOperations() {
+		return List.of(Aggregation.lookup("students", "studentId", "_id", "student"), Aggregation.unwind("student"),
+				context -> new Document("$match",
+						new Document("$expr", new Document("$lt", List.of("$seq", "$student.archiveSeq")))),
+				context -> new Document("$project", new Document("student", 0)));
+	}
+
+	@Override
+	public void removeArchivedMarks(long id) {
+		marksArchiveRepo.deleteByStudentId(id);
+	}
+
+	// archivedHorizon isn`t overwritten
+	private void saveProgress(LocalDate horizon, long lastId, boolean finished) {
+		mongoTemplate.upsert(new Query(Criteria.where("id").is(JOB_ID)), new Update().set("horizon", horizon)
+				.set("lastStudentId", lastId).set("finished", finished), ArchiveJobState.class);
+	}
+
+	private LocalDate getConfiguredHorizon() {
+		return LocalDate.now().minusDays(horizonDays);
+	}
+
+	private List<StudentDoc> getBatch(long lastId, LocalDate horizon) {
+		Query query = new Query(Criteria.where("id").gt(lastId).and("marks.date").lt(horizon))
+				.with(Sort.by("id")).limit(batchSize);
+		query.fields().include("marks", "summaries", "archiveSeq");
+		return mongoTemplate.find(query, StudentDoc.class);
+	}
+
+	// archive document is written first with the current archiveSeq of the student;
+	// the student is updated only if neither marks nor archiveSeq were changed since reading,
+	// otherwise the student is left for the next run which overwrites the same archive document;
+	// until the student update the document is ignored by the readers (getCommittedArchiveOperations)
+	private int archiveStudent(StudentDoc studentDoc, LocalDate horizon) {
+		List<Mark> marks = studentDoc.getMarks();
+		List<Mark> oldMarks = marks.stream().filter(m -> m.date() != null && m.date().isBefore(horizon)).toList();
+		if (oldMarks.isEmpty()) {
+			return 0;
+		}
+		long seq = studentDoc.getArchiveSeq();
+		marksArchiveRepo.save(ArchivedMarksDoc.of(studentDoc.getId(), seq, oldMarks));
+		Criteria criteria = Criteria.where("id").is(studentDoc.getId()).and("marks").size(marks.size());
+		criteria = seq == 0 ? criteria.and("archiveSeq").in(0, null) : criteria.and("archiveSeq").is(seq);
+		Date horizonDate = Date.from(horizon.atStartOfDay(ZoneId.systemDefault()).toInstant());
+		Update update = new Update().pull("marks", new Document("date", new Document("$lt", horizonDate)))
+				.set("summaries", getSummaries(studentDoc.getSummaries(), oldMarks)).inc("archiveSeq", 1);
+		UpdateResult result = mongoTemplate.updateFirst(new Query(criteria), update, StudentDoc.class);
+		if (result.getModifiedCount() == 0) {
+			log.debug("student {} was changed while archiving, left for the next run", studentDoc.getId());
+			return 0;
+		}
+		return oldMarks.size();
+	}
+
+	private List<MarksSummary> getSummaries(List<MarksSummary> summaries, List<Mark> marks) {
+		Map<String, MarksSummary> res = new LinkedHashMap<>();
+		if (summaries != null) {
+			summaries.forEach(s -> res.put(s.subject() + "|" + s.period(), s));
+		}
+		for (Mark mark : marks) {
+			String period = mark.date().format(PERIOD_FORMATTER);
+			res.merge(mark.subject() + "|" + period, MarksSummary.of(mark, period), MarksSummary::merge);
+		}
+		return new ArrayList<>(res.values());
+	}
+
+	private void pause() {
+		try {
+			Thread.sleep(pauseMs);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("marks archiving interrupted", e);
+		}
+	}
+}
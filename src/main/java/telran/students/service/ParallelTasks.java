@@ -0,0 +1,49 @@
+package telran.students.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class ParallelTasks {
+	private ParallelTasks() {
+	}
+
+//runs the tasks by nThreads threads, returns the results in the order of the tasks
+//the first failure is rethrown as is (RuntimeException) or wrapped into IllegalStateException
+	static <T> List<T> invokeAll(List<Callable<T>> tasks, int nThreads) {
+		List<T> res = new ArrayList<>(tasks.size());
+		if (tasks.size() == 1) {
+			res.add(call(tasks.get(0)));
+		} else if (!tasks.isEmpty()) {
+			ExecutorService executor = Executors.newFixedThreadPool(Math.min(nThreads, tasks.size()));
+			try {
+				for (Future<T> future : executor.invokeAll(tasks)) {
+					res.add(future.get());
+				}
+			} catch (ExecutionException e) {
+				throw e.getCause() instanceof RuntimeException cause ? cause
+						: new IllegalStateException(e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("interrupted", e);
+			} finally {
+				executor.shutdownNow();
+			}
+		}
+		return res;
+	}
+
+	private static <T> T call(Callable<T> task) {
+		try {
+			return task.call();
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
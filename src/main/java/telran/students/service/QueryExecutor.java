@@ -0,0 +1,21 @@
+package telran.students.service;
+
+import java.util.function.Supplier;
+
+//runs independent queries of one request:
+//open scope, fork the queries, join, then get the results from the suppliers returned by fork
+//SequentialQueryExecutor runs the queries one by one in the calling thread,
+//StructuredQueryExecutor (virtual-threads build profile) runs them concurrently on virtual threads
+public interface QueryExecutor {
+	QueryScope open();
+
+	interface QueryScope extends AutoCloseable {
+		<T> Supplier<T> fork(Supplier<T> query);
+
+		// waits for all the forked queries, rethrows the first failure
+		void join();
+
+		@Override
+		void close();
+	}
+}
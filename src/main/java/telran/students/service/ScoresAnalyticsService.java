@@ -0,0 +1,29 @@
+package telran.students.service;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import telran.students.dto.*;
+
+public interface ScoresAnalyticsService {
+//approximate quantiles of scores kept as mergeable t-digest sketches per subject and month
+//date ranges are widened to whole months: from the month of "from" till the month of "to" inclusive
+//scores are pushed into a pending buffer of a sketch and folded into its digest periodically,
+//the queries take the pending scores into account; a mark without date isn`t added (no month)
+	void addScore(Mark mark);
+
+	SubjectPercentiles getSubjectPercentiles(String subject, LocalDate from, LocalDate to);
+
+	List<SubjectPercentiles> getPercentiles(LocalDate from, LocalDate to);
+
+	double getSubjectQuantile(String subject, LocalDate from, LocalDate to, double quantile);
+
+//sketches can`t forget scores (removed students); rebuilds all the sketches from the marks
+//of the students and the archived marks; returns the number of scores
+//scores pushes and folds of this instance wait for the end of the rebuild (pushed scores aren`t lost, but a mark
+//added while the students are read may be counted twice); it must run when no marks are added by other instances
+	long rebuildSketches();
+
+//folds the pending scores into the digests; returns the number of folded scores
+	long foldPendingScores();
+}
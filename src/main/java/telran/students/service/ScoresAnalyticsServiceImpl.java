@@ -0,0 +1,272 @@
+package telran.students.service;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.mongodb.client.result.UpdateResult;
+import com.tdunning.math.stats.MergingDigest;
+import com.tdunning.math.stats.TDigest;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.*;
+import telran.students.model.ArchivedMarksDoc;
+import telran.students.model.ScoresSketchDoc;
+import telran.students.model.StudentDoc;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ScoresAnalyticsServiceImpl implements ScoresAnalyticsService {
+	static final DateTimeFormatter MONTH_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM");
+	static final double MEDIAN = 0.5;
+	static final double P90 = 0.9;
+	static final String REBUILD_COLLECTION = "scores_sketches_rebuild";
+	final MongoTemplate mongoTemplate;
+	// pushes of the scores and folds share it, rebuild holds it exclusively (see rebuildSketches)
+	private final ReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+	@Value("${students.analytics.sketch.compression:100}")
+	double compression;
+	@Value("${students.analytics.sketch.shards:4}")
+	int nShards;
+
+	record SubjectMonth(String subject, String month) {
+	}
+
+	@Override
+	public void addScore(Mark mark) {
+		if (mark.date() == null) {
+			log.debug("score {} without date isn`t added into the sketches", mark);
+			return;
+		}
+		rebuildLock.readLock().lock();
+		try {
+			pushScore(mark);
+		} finally {
+			rebuildLock.readLock().unlock();
+		}
+	}
+
+	private void pushScore(Mark mark) {
+		String month = mark.date().format(MONTH_FORMATTER);
+		Query query = new Query(Criteria.where("id").is(
+				ScoresSketchDoc.getId(mark.subject(), month, ThreadLocalRandom.current().nextInt(nShards))));
+		Update update = new Update().push("pending", mark.score()).setOnInsert("subject", mark.subject())
+				.setOnInsert("month", month);
+		try {
+			mongoTemplate.upsert(query, update, ScoresSketchDoc.class);
+		} catch (DuplicateKeyException e) {
+			// concurrent upsert has inserted the sketch, now it is updated
+			mongoTemplate.upsert(query, update, ScoresSketchDoc.class);
+		}
+		log.trace("score {} added into pending scores of the sketch", mark);
+	}
+
+	// scores added after the commit of the mark, a failed transaction doesn`t leave a score
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onMarkAdded(MarkAddedEvent event) {
+		addScore(event.mark());
+	}
+
+	@Override
+	@Scheduled(initialDelayString = "${students.analytics.sketch.fold.ms:10000}",
+			fixedDelayString = "${students.analytics.sketch.fold.ms:10000}")
+	public long foldPendingScores() {
+		rebuildLock.readLock().lock();
+		try {
+			return foldSketches();
+		} finally {
+			rebuildLock.readLock().unlock();
+		}
+	}
+
+	private long foldSketches() {
+		Query query = new Query(new Criteria().orOperator(Criteria.where("pending.0").exists(true),
+				Criteria.where("folding").exists(true)));
+		query.fields().include("id");
+		long res = mongoTemplate.find(query, ScoresSketchDoc.class).stream()
+				.mapToLong(sketch -> foldSketch(sketch.getId())).sum();
+		log.debug("{} pending scores folded into the sketches", res);
+		return res;
+	}
+
+	// pending scores are moved into folding by one atomic update (scores added meanwhile go into new pending),
+	// then the digest is updated and folding is removed by another one, if no other fold has intervened;
+	// a fold interrupted between the updates is completed by the next one
+	private long foldSketch(String id) {
+		mongoTemplate.updateFirst(
+				new Query(Criteria.where("id").is(id).and("folding").exists(false).and("pending.0").exists(true)),
+				new Update().rename("pending", "folding").inc("foldSeq", 1), ScoresSketchDoc.class);
+		ScoresSketchDoc sketch = mongoTemplate.findById(id, ScoresSketchDoc.class);
+		long res = 0;
+		if (sketch != null && sketch.getFolding() != null) {
+			TDigest digest = toDigest(sketch.getDigest());
+			for (int score : sketch.getFolding()) {
+				digest.add(score);
+			}
+			UpdateResult result = mongoTemplate.updateFirst(
+					new Query(Criteria.where("id").is(id).and("foldSeq").is(sketch.getFoldSeq()).and("folding")
+							.exists(true)),
+					new Update().set("digest", toBytes(digest)).set("count", digest.size()).unset("folding"),
+					ScoresSketchDoc.class);
+			if (result.getModifiedCount() > 0) {
+				res = sketch.getFolding().size();
+			}
+		}
+		return res;
+	}
+
+	@Override
+	public SubjectPercentiles getSubjectPercentiles(String subject, LocalDate from, LocalDate to) {
+		return toPercentiles(subject, merge(findSketches(subject, from, to)));
+	}
+
+	@Override
+	public List<SubjectPercentiles> getPercentiles(LocalDate from, LocalDate to) {
+		Map<String, List<ScoresSketchDoc>> subjectsSketches = findSketches(null, from, to).stream()
+				.collect(Collectors.groupingBy(ScoresSketchDoc::getSubject, TreeMap::new, Collectors.toList()));
+		List<SubjectPercentiles> res = subjectsSketches.entrySet().stream()
+				.map(e -> toPercentiles(e.getKey(), merge(e.getValue()))).toList();
+		log.debug("percentiles: {}", res);
+		return res;
+	}
+
+	@Override
+	public double getSubjectQuantile(String subject, LocalDate from, LocalDate to, double quantile) {
+		if (quantile < 0 || quantile > 1) {
+			throw new IllegalArgumentException(String.format("quantile %f isn`t in range [0, 1]", quantile));
+		}
+		TDigest digest = merge(findSketches(subject, from, to));
+		return digest.size() == 0 ? Double.NaN : digest.quantile(quantile);
+	}
+
+	@Override
+	public long rebuildSketches() {
+		rebuildLock.writeLock().lock();
+		try {
+			return buildSketches();
+		} finally {
+			rebuildLock.writeLock().unlock();
+		}
+	}
+
+	// the new sketches are written into a separate collection replacing the current one at the end
+	private long buildSketches() {
+		Map<SubjectMonth, TDigest> digests = new HashMap<>();
+		Query studentsQuery = new Query();
+		studentsQuery.fields().include("marks");
+		try (Stream<StudentDoc> students = mongoTemplate.stream(studentsQuery, StudentDoc.class)) {
+			students.forEach(studentDoc -> addScores(digests, studentDoc.getMarks()));
+		}
+		Aggregation archivePipeline = Aggregation
+				.newAggregation(MarksArchiveServiceImpl.getCommittedArchiveOperations());
+		try (Stream<ArchivedMarksDoc> archived = mongoTemplate.aggregateStream(archivePipeline,
+				ArchivedMarksDoc.class, ArchivedMarksDoc.class)) {
+			archived.forEach(archivedDoc -> addScores(digests, archivedDoc.getMarks()));
+		}
+		mongoTemplate.dropCollection(REBUILD_COLLECTION);
+		long res = 0;
+		for (var entry : digests.entrySet()) {
+			ScoresSketchDoc sketch = ScoresSketchDoc.of(entry.getKey().subject(), entry.getKey().month(), 0);
+			sketch.setDigest(toBytes(entry.getValue()));
+			sketch.setCount(entry.getValue().size());
+			mongoTemplate.insert(sketch, REBUILD_COLLECTION);
+			res += sketch.getCount();
+		}
+		// readers see either the old sketches or the new ones
+		if (digests.isEmpty()) {
+			mongoTemplate.dropCollection(ScoresSketchDoc.class);
+		} else {
+			mongoTemplate.getCollection(REBUILD_COLLECTION).renameCollection(
+					new MongoNamespace(mongoTemplate.getDb().getName(),
+							mongoTemplate.getCollectionName(ScoresSketchDoc.class)),
+					new RenameCollectionOptions().dropTarget(true));
+		}
+		log.info("rebuilt {} sketches of {} scores", digests.size(), res);
+		return res;
+	}
+
+	private void addScores(Map<SubjectMonth, TDigest> digests, List<Mark> marks) {
+		if (marks != null) {
+			for (Mark mark : marks) {
+				if (mark.date() == null) {
+					continue;
+				}
+				digests.computeIfAbsent(new SubjectMonth(mark.subject(), mark.date().format(MONTH_FORMATTER)),
+						k -> newDigest()).add(mark.score());
+			}
+		}
+	}
+
+	// all subjects for null subject
+	private List<ScoresSketchDoc> findSketches(String subject, LocalDate from, LocalDate to) {
+		Criteria criteria = Criteria.where("month").gte(from.format(MONTH_FORMATTER))
+				.lte(to.format(MONTH_FORMATTER));
+		if (subject != null) {
+			criteria = criteria.and("subject").is(subject);
+		}
+		return mongoTemplate.find(new Query(criteria), ScoresSketchDoc.class);
+	}
+
+	// folded scores and the ones not folded yet
+	private TDigest merge(List<ScoresSketchDoc> sketches) {
+		TDigest res = newDigest();
+		for (ScoresSketchDoc sketch : sketches) {
+			res.add(toDigest(sketch.getDigest()));
+			addScores(res, sketch.getPending());
+			addScores(res, sketch.getFolding());
+		}
+		return res;
+	}
+
+	private void addScores(TDigest digest, List<Integer> scores) {
+		if (scores != null) {
+			for (int score : scores) {
+				digest.add(score);
+			}
+		}
+	}
+
+	private SubjectPercentiles toPercentiles(String subject, TDigest digest) {
+		long count = digest.size();
+		return count == 0 ? new SubjectPercentiles(subject, 0, null, null)
+				: new SubjectPercentiles(subject, count, digest.quantile(MEDIAN), digest.quantile(P90));
+	}
+
+	private TDigest newDigest() {
+		return TDigest.createMergingDigest(compression);
+	}
+
+	private TDigest toDigest(byte[] bytes) {
+		return bytes == null ? newDigest() : MergingDigest.fromBytes(ByteBuffer.wrap(bytes));
+	}
+
+	private byte[] toBytes(TDigest digest) {
+		ByteBuffer buffer = ByteBuffer.allocate(digest.smallByteSize());
+		digest.asSmallBytes(buffer);
+		return buffer.array();
+	}
+}
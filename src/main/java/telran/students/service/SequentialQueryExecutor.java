@@ -0,0 +1,28 @@
+package telran.students.service;
+
+import java.util.function.Supplier;
+
+//the fallback executor, see QueryExecutorEnabler
+public class SequentialQueryExecutor implements QueryExecutor {
+
+	@Override
+	public QueryScope open() {
+		return new QueryScope() {
+
+			@Override
+			public <T> Supplier<T> fork(Supplier<T> query) {
+				T res = query.get();
+				return () -> res;
+			}
+
+			@Override
+			public void join() {
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+}
@@ -0,0 +1,306 @@
+package telran.students.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+import telran.students.dto.*;
+import telran.students.model.ArchivedMarksDoc;
+import telran.students.model.StudentDoc;
+
+//partition file of the students snapshot
+//header: magic, version
+//records: length (int) followed by id, name, phone, number of marks, marks (subject, epoch day, score),
+//archive sequence, number of summaries (-1 for none), summaries (subject, period, count, sum, min, max)
+//trailer: length 0, number of records, CRC32C of all the records (without length prefixes)
+//the marks archive file has the same layout with records: student id, sequence, number of marks, marks
+class SnapshotFile {
+	static final int MAGIC = 0x534E4150;
+	static final int VERSION = 2;
+	static final int IO_BUFFER_SIZE = 1 << 20;
+	static final int TRAILER_SIZE = Integer.BYTES + 2 * Long.BYTES;
+	static final int NO_DATE = Integer.MIN_VALUE;
+
+	private SnapshotFile() {
+	}
+
+	static class Writer implements Closeable {
+		final FileChannel channel;
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+		final RecordBuffer record = new RecordBuffer();
+		final DataOutputStream recordOutput = new DataOutputStream(record);
+		final CRC32C crc = new CRC32C();
+		long count;
+		long bytes;
+
+		Writer(Path path) throws IOException {
+			channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+			buffer.putInt(MAGIC).putInt(VERSION);
+		}
+
+		void write(StudentDoc studentDoc) throws IOException {
+			record.reset();
+			encode(studentDoc, recordOutput);
+			writeRecord();
+		}
+
+		void write(ArchivedMarksDoc archivedDoc) throws IOException {
+			record.reset();
+			encode(archivedDoc, recordOutput);
+			writeRecord();
+		}
+
+		long getCrc() {
+			return crc.getValue();
+		}
+
+		private void writeRecord() throws IOException {
+			ByteBuffer recordBytes = record.asByteBuffer();
+			crc.update(recordBytes.duplicate());
+			int length = recordBytes.remaining();
+			if (Integer.BYTES + length > buffer.remaining()) {
+				flush();
+			}
+			buffer.putInt(length);
+			if (Integer.BYTES + length > buffer.capacity()) {
+				flush();
+				writeFully(recordBytes);
+			} else {
+				buffer.put(recordBytes);
+			}
+			count++;
+		}
+
+		@Override
+		public void close() throws IOException {
+			try {
+				if (buffer.remaining() < TRAILER_SIZE) {
+					flush();
+				}
+				buffer.putInt(0).putLong(count).putLong(crc.getValue());
+				flush();
+				channel.force(false);
+			} finally {
+				channel.close();
+			}
+		}
+
+		private void flush() throws IOException {
+			buffer.flip();
+			writeFully(buffer);
+			buffer.clear();
+		}
+
+		private void writeFully(ByteBuffer bytesBuffer) throws IOException {
+			while (bytesBuffer.hasRemaining()) {
+				bytes += channel.write(bytesBuffer);
+			}
+		}
+	}
+
+	static class Reader implements Closeable {
+		final Path path;
+		final FileChannel channel;
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(IO_BUFFER_SIZE);
+		final CRC32C crc = new CRC32C();
+		byte[] record = new byte[4096];
+		int recordLength;
+		long count;
+
+		Reader(Path path) throws IOException {
+			this.path = path;
+			channel = FileChannel.open(path, StandardOpenOption.READ);
+			buffer.flip();
+			fill(2 * Integer.BYTES);
+			if (buffer.getInt() != MAGIC) {
+				throw new IllegalStateException(String.format("%s is not a students snapshot file", path));
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IllegalStateException(String.format("%s: unsupported version %d", path, version));
+			}
+		}
+
+		// reads next record; at the end checks the trailer and returns false
+		boolean next() throws IOException {
+			fill(Integer.BYTES);
+			recordLength = buffer.getInt();
+			if (recordLength == 0) {
+				checkTrailer();
+				return false;
+			}
+			if (recordLength < 0 || recordLength > channel.size()) {
+				throw corrupted();
+			}
+			if (record.length < recordLength) {
+				record = new byte[recordLength];
+			}
+			int offset = 0;
+			while (offset < recordLength) {
+				fill(1);
+				int size = Math.min(recordLength - offset, buffer.remaining());
+				buffer.get(record, offset, size);
+				offset += size;
+			}
+			crc.update(record, 0, recordLength);
+			count++;
+			return true;
+		}
+
+		StudentDoc get() {
+			try {
+				return decode(getInput());
+			} catch (IOException e) {
+				throw corrupted();
+			}
+		}
+
+		ArchivedMarksDoc getArchived() {
+			try {
+				return decodeArchived(getInput());
+			} catch (IOException e) {
+				throw corrupted();
+			}
+		}
+
+		long getCrc() {
+			return crc.getValue();
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+
+		private DataInput getInput() {
+			return new DataInputStream(new ByteArrayInputStream(record, 0, recordLength));
+		}
+
+		private void checkTrailer() throws IOException {
+			fill(2 * Long.BYTES);
+			long expectedCount = buffer.getLong();
+			long expectedCrc = buffer.getLong();
+			if (expectedCount != count || expectedCrc != crc.getValue()) {
+				throw new IllegalStateException(String.format("%s: checksum mismatch", path));
+			}
+		}
+
+		private void fill(int size) throws IOException {
+			if (buffer.remaining() < size) {
+				buffer.compact();
+				while (buffer.position() < size) {
+					if (channel.read(buffer) < 0) {
+						throw new IllegalStateException(String.format("%s is truncated", path));
+					}
+				}
+				buffer.flip();
+			}
+		}
+
+		private IllegalStateException corrupted() {
+			return new IllegalStateException(String.format("%s is corrupted, record %d", path, count + 1));
+		}
+	}
+
+	static void encode(StudentDoc studentDoc, DataOutput output) throws IOException {
+		output.writeLong(studentDoc.getId());
+		writeString(output, studentDoc.getName());
+		writeString(output, studentDoc.getPhone());
+		writeMarks(output, studentDoc.getMarks());
+		output.writeLong(studentDoc.getArchiveSeq());
+		List<MarksSummary> summaries = studentDoc.getSummaries();
+		output.writeInt(summaries == null ? -1 : summaries.size());
+		if (summaries != null) {
+			for (MarksSummary summary : summaries) {
+				writeString(output, summary.subject());
+				writeString(output, summary.period());
+				output.writeInt(summary.count());
+				output.writeLong(summary.sum());
+				output.writeInt(summary.min());
+				output.writeInt(summary.max());
+			}
+		}
+	}
+
+	static StudentDoc decode(DataInput input) throws IOException {
+		StudentDoc res = StudentDoc.of(new Student(input.readLong(), readString(input), readString(input)));
+		readMarks(input).forEach(res::addMark);
+		res.setArchiveSeq(input.readLong());
+		int nSummaries = input.readInt();
+		if (nSummaries >= 0) {
+			List<MarksSummary> summaries = new ArrayList<>(nSummaries);
+			for (int i = 0; i < nSummaries; i++) {
+				summaries.add(new MarksSummary(readString(input), readString(input), input.readInt(),
+						input.readLong(), input.readInt(), input.readInt()));
+			}
+			res.setSummaries(summaries);
+		}
+		return res;
+	}
+
+	static void encode(ArchivedMarksDoc archivedDoc, DataOutput output) throws IOException {
+		output.writeLong(archivedDoc.getStudentId());
+		output.writeLong(archivedDoc.getSeq());
+		writeMarks(output, archivedDoc.getMarks());
+	}
+
+	static ArchivedMarksDoc decodeArchived(DataInput input) throws IOException {
+		long studentId = input.readLong();
+		long seq = input.readLong();
+		return ArchivedMarksDoc.of(studentId, seq, readMarks(input));
+	}
+
+	private static void writeMarks(DataOutput output, List<Mark> marks) throws IOException {
+		if (marks == null) {
+			marks = List.of();
+		}
+		output.writeInt(marks.size());
+		for (Mark mark : marks) {
+			writeString(output, mark.subject());
+			output.writeInt(mark.date() == null ? NO_DATE : (int) mark.date().toEpochDay());
+			output.writeInt(mark.score());
+		}
+	}
+
+	private static List<Mark> readMarks(DataInput input) throws IOException {
+		int nMarks = input.readInt();
+		List<Mark> res = new ArrayList<>();
+		for (int i = 0; i < nMarks; i++) {
+			String subject = readString(input);
+			int epochDay = input.readInt();
+			res.add(new Mark(subject, epochDay == NO_DATE ? null : LocalDate.ofEpochDay(epochDay), input.readInt()));
+		}
+		return res;
+	}
+
+	private static void writeString(DataOutput output, String value) throws IOException {
+		output.writeBoolean(value != null);
+		if (value != null) {
+			output.writeUTF(value);
+		}
+	}
+
+	private static String readString(DataInput input) throws IOException {
+		return input.readBoolean() ? input.readUTF() : null;
+	}
+
+	private static class RecordBuffer extends ByteArrayOutputStream {
+		ByteBuffer asByteBuffer() {
+			return ByteBuffer.wrap(buf, 0, count);
+		}
+	}
+}
@@ -0,0 +1,20 @@
+package telran.students.service;
+
+import java.io.OutputStream;
+import java.nio.channels.WritableByteChannel;
+
+import telran.students.dto.ExportFormat;
+
+public interface StudentsExportService {
+//writes all students with their marks and per student aggregates (count, sum, min, max, avg of scores)
+//aggregates include the archived marks through their summaries
+//one line per student; the students collection is read with a cursor per partition of ids,
+//so memory doesn`t depend on the collection size. With nPartitions > 1 the lines of different
+//partitions are interleaved, inside a partition students are ordered by id
+//CSV marks column: marks separated by ';', fields subject|date|score; '\', '|' and ';' inside the fields
+//are escaped by '\'
+//returns number of the exported students
+	long exportStudents(WritableByteChannel channel, ExportFormat format, int nPartitions);
+
+	long exportStudents(OutputStream output, ExportFormat format, int nPartitions);
+}
@@ -0,0 +1,250 @@
+package telran.students.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StudentsExportServiceImpl implements StudentsExportService {
+	static final String CSV_HEADER = "id,name,phone,marksCount,sumScores,minScore,maxScore,avgScore,marks\n";
+	final StudentRepo studentRepo;
+	final MongoTemplate mongoTemplate;
+	@Value("${students.export.cursor.batch.size:1000}")
+	int cursorBatchSize;
+	@Value("${students.export.buffer.size:65536}")
+	int bufferSize;
+
+	@Override
+	public long exportStudents(OutputStream output, ExportFormat format, int nPartitions) {
+		return exportStudents(Channels.newChannel(output), format, nPartitions);
+	}
+
+	@Override
+	public long exportStudents(WritableByteChannel channel, ExportFormat format, int nPartitions) {
+		if (nPartitions < 1) {
+			throw new IllegalArgumentException("number of partitions should be positive");
+		}
+		if (format == ExportFormat.CSV) {
+			write(channel, ByteBuffer.wrap(CSV_HEADER.getBytes(StandardCharsets.UTF_8)));
+		}
+		List<IdRange> ranges = IdRange.split(studentRepo, nPartitions);
+		log.debug("export {}, partitions {}", format, ranges);
+		long res = ParallelTasks
+				.invokeAll(ranges.stream().map(range -> (Callable<Long>) () -> exportRange(range, channel, format))
+						.toList(), ranges.size())
+				.stream().mapToLong(Long::longValue).sum();
+		log.debug("exported {} students", res);
+		return res;
+	}
+
+	private long exportRange(IdRange range, WritableByteChannel channel, ExportFormat format) {
+		Query query = new Query(range.criteria()).with(Sort.by("id")).cursorBatchSize(cursorBatchSize);
+		ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+		StringBuilder line = new StringBuilder();
+		long count = 0;
+		try (Stream<StudentDoc> students = mongoTemplate.stream(query, StudentDoc.class)) {
+			var iterator = students.iterator();
+			while (iterator.hasNext()) {
+				line.setLength(0);
+				StudentDoc studentDoc = iterator.next();
+				if (format == ExportFormat.CSV) {
+					appendCsv(line, studentDoc);
+				} else {
+					appendJson(line, studentDoc);
+				}
+				put(buffer, line.toString().getBytes(StandardCharsets.UTF_8), channel);
+				count++;
+			}
+		}
+		buffer.flip();
+		write(channel, buffer);
+		return count;
+	}
+
+	private void put(ByteBuffer buffer, byte[] bytes, WritableByteChannel channel) {
+		if (bytes.length > buffer.remaining()) {
+			buffer.flip();
+			write(channel, buffer);
+			buffer.clear();
+		}
+		if (bytes.length > buffer.capacity()) {
+			write(channel, ByteBuffer.wrap(bytes));
+		} else {
+			buffer.put(bytes);
+		}
+	}
+
+	private void write(WritableByteChannel channel, ByteBuffer buffer) {
+		// whole buffer is written under lock, so lines of different partitions are never mixed
+		synchronized (channel) {
+			try {
+				while (buffer.hasRemaining()) {
+					channel.write(buffer);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	private void appendJson(StringBuilder line, StudentDoc studentDoc) {
+		line.append("{\"id\":").append(studentDoc.getId()).append(",\"name\":");
+		appendJsonString(line, studentDoc.getName());
+		line.append(",\"phone\":");
+		appendJsonString(line, studentDoc.getPhone());
+		line.append(",\"marks\":[");
+		String delimiter = "";
+		for (Mark mark : getMarks(studentDoc)) {
+			line.append(delimiter).append("{\"subject\":");
+			appendJsonString(line, mark.subject());
+			line.append(",\"date\":");
+			if (mark.date() == null) {
+				line.append("null");
+			} else {
+				line.append('"').append(mark.date()).append('"');
+			}
+			line.append(",\"score\":").append(mark.score()).append('}');
+			delimiter = ",";
+		}
+		ScoresStatistics statistics = new ScoresStatistics(studentDoc);
+		line.append("],\"marksCount\":").append(statistics.count).append(",\"sumScores\":").append(statistics.sum)
+				.append(",\"minScore\":").append(statistics.minOrNull()).append(",\"maxScore\":")
+				.append(statistics.maxOrNull()).append(",\"avgScore\":").append(statistics.avgOrNull())
+				.append("}\n");
+	}
+
+	private void appendCsv(StringBuilder line, StudentDoc studentDoc) {
+		ScoresStatistics statistics = new ScoresStatistics(studentDoc);
+		line.append(studentDoc.getId()).append(',');
+		appendCsvString(line, studentDoc.getName());
+		line.append(',');
+		appendCsvString(line, studentDoc.getPhone());
+		line.append(',').append(statistics.count).append(',').append(statistics.sum).append(',')
+				.append(toCsv(statistics.minOrNull())).append(',').append(toCsv(statistics.maxOrNull())).append(',')
+				.append(toCsv(statistics.avgOrNull())).append(',');
+		StringBuilder marks = new StringBuilder();
+		for (Mark mark : getMarks(studentDoc)) {
+			if (!marks.isEmpty()) {
+				marks.append(';');
+			}
+			appendMarkField(marks, mark.subject());
+			marks.append('|').append(toCsv(mark.date())).append('|').append(mark.score());
+		}
+		appendCsvString(line, marks.toString());
+		line.append('\n');
+	}
+
+	private static List<Mark> getMarks(StudentDoc studentDoc) {
+		return studentDoc.getMarks() == null ? List.of() : studentDoc.getMarks();
+	}
+
+	private static String toCsv(Object value) {
+		return value == null ? "" : value.toString();
+	}
+
+	private static void appendMarkField(StringBuilder marks, String value) {
+		if (value != null) {
+			for (int i = 0; i < value.length(); i++) {
+				char c = value.charAt(i);
+				if (c == '\\' || c == '|' || c == ';') {
+					marks.append('\\');
+				}
+				marks.append(c);
+			}
+		}
+	}
+
+	private static void appendCsvString(StringBuilder line, String value) {
+		if (value == null) {
+			return;
+		}
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+				&& value.indexOf('\r') < 0) {
+			line.append(value);
+		} else {
+			line.append('"').append(value.replace("\"", "\"\"")).append('"');
+		}
+	}
+
+	private static void appendJsonString(StringBuilder line, String value) {
+		if (value == null) {
+			line.append("null");
+			return;
+		}
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"' -> line.append("\\\"");
+			case '\\' -> line.append("\\\\");
+			case '\n' -> line.append("\\n");
+			case '\r' -> line.append("\\r");
+			case '\t' -> line.append("\\t");
+			default -> {
+				if (c < 0x20) {
+					line.append(String.format("\\u%04x", (int) c));
+				} else {
+					line.append(c);
+				}
+			}
+			}
+		}
+		line.append('"');
+	}
+
+	private static class ScoresStatistics {
+		long count;
+		long sum;
+		int min = Integer.MAX_VALUE;
+		int max = Integer.MIN_VALUE;
+
+		ScoresStatistics(StudentDoc studentDoc) {
+			for (Mark mark : getMarks(studentDoc)) {
+				add(1, mark.score(), mark.score(), mark.score());
+			}
+			if (studentDoc.getSummaries() != null) {
+				studentDoc.getSummaries().forEach(s -> add(s.count(), s.sum(), s.min(), s.max()));
+			}
+		}
+
+		void add(int count, long sum, int min, int max) {
+			this.count += count;
+			this.sum += sum;
+			this.min = Math.min(this.min, min);
+			this.max = Math.max(this.max, max);
+		}
+
+		Integer minOrNull() {
+			return count == 0 ? null : min;
+		}
+
+		Integer maxOrNull() {
+			return count == 0 ? null : max;
+		}
+
+		Double avgOrNull() {
+			return count == 0 ? null : (double) sum / count;
+		}
+	}
+}
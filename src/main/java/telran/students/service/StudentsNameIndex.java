@@ -0,0 +1,126 @@
+package telran.students.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.StudentAddedEvent;
+import telran.students.dto.StudentRemovedEvent;
+import telran.students.model.StudentDoc;
+
+//trigram index of the students names; built in background after the application start
+//(until it is built search scans at most students.names.scan.limit names of the collection)
+//and rebuilt after bulk changes of the students collection;
+//changes made while building are applied to the new index before it replaces the current one
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class StudentsNameIndex {
+	final MongoTemplate mongoTemplate;
+	@Value("${students.names.scan.limit:100000}")
+	int scanLimit;
+	private final Object changesLock = new Object();
+	private volatile TrigramIndex index;
+	private List<Consumer<TrigramIndex>> pendingChanges;
+
+	@EventListener(ApplicationReadyEvent.class)
+	public void buildOnStartup() {
+		Thread builder = new Thread(() -> {
+			try {
+				rebuild();
+			} catch (RuntimeException e) {
+				log.error("students names index isn`t built: {}", e.toString());
+			}
+		}, "names-index-builder");
+		builder.setDaemon(true);
+		builder.start();
+	}
+
+	// returns the number of the indexed names
+	public synchronized int rebuild() {
+		synchronized (changesLock) {
+			pendingChanges = new ArrayList<>();
+		}
+		TrigramIndex newIndex = new TrigramIndex();
+		Query query = new Query();
+		query.fields().include("name");
+		try (Stream<StudentDoc> students = mongoTemplate.stream(query, StudentDoc.class)) {
+			students.forEach(studentDoc -> newIndex.add(studentDoc.getId(), studentDoc.getName()));
+		} catch (RuntimeException e) {
+			synchronized (changesLock) {
+				pendingChanges = null;
+			}
+			throw e;
+		}
+		// compacted before taking the lock, only the changes made while building are applied under it
+		newIndex.compact();
+		synchronized (changesLock) {
+			pendingChanges.forEach(change -> change.accept(newIndex));
+			pendingChanges = null;
+			index = newIndex;
+		}
+		int res = newIndex.size();
+		log.info("students names index is built, {} names", res);
+		return res;
+	}
+
+	// the index is changed after the commit of the students change, a rolled back change isn`t applied
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onStudentAdded(StudentAddedEvent event) {
+		add(event.id(), event.name());
+	}
+
+	@TransactionalEventListener(fallbackExecution = true)
+	public void onStudentRemoved(StudentRemovedEvent event) {
+		remove(event.id());
+	}
+
+	public void add(long id, String name) {
+		apply(names -> names.add(id, name));
+	}
+
+	public void remove(long id) {
+		apply(names -> names.remove(id));
+	}
+
+	public List<TrigramIndex.Hit> search(String namePart, int limit) {
+		TrigramIndex current = index;
+		return current != null ? current.search(namePart, limit) : scan(namePart, limit);
+	}
+
+	// the index isn`t built yet: the names beyond the first scanLimit students (by id) aren`t found
+	private List<TrigramIndex.Hit> scan(String namePart, int limit) {
+		TrigramIndex.Scan scan = new TrigramIndex.Scan(namePart, limit);
+		Query query = new Query().with(Sort.by("id")).limit(scanLimit);
+		query.fields().include("name");
+		try (Stream<StudentDoc> students = mongoTemplate.stream(query, StudentDoc.class)) {
+			students.forEach(studentDoc -> scan.check(studentDoc.getId(), TrigramIndex.normalize(studentDoc.getName())));
+		}
+		List<TrigramIndex.Hit> res = scan.getHits();
+		log.debug("students names index isn`t built, at most {} names scanned for {}", scanLimit, namePart);
+		return res;
+	}
+
+	private void apply(Consumer<TrigramIndex> change) {
+		synchronized (changesLock) {
+			if (pendingChanges != null) {
+				pendingChanges.add(change);
+			}
+			if (index != null) {
+				change.accept(index);
+			}
+		}
+	}
+}
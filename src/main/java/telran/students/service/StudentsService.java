@@ -6,6 +6,10 @@ import java.util.List;
 import telran.students.dto.*;
 
 public interface StudentsService {
+//marks older than the archiving horizon may be moved into the archive (see MarksArchiveService):
+//addMark, getMarks and getStudentSubjectMarks return the live marks only (getStudentMarksAtDates
+//returns the archived ones as well); marks count and score threshold queries, scores statistics
+//take the archived marks into account through the summaries
 	Student addStudent(Student student);
 
 	Student updatePhone(long id, String phone);
@@ -45,4 +49,13 @@ public interface StudentsService {
 	List<String> getBestStudents(int nStudents);
 
 	List<String> getWorstStudents(int nStudents);
+
+//profile, marks, average score and rank of a student: the student document and the rank are fetched
+//by independent queries (concurrently in the virtual threads mode); the rank query aggregates
+//the whole collection, its cost is linear in the number of students
+	StudentDashboard getStudentDashboard(long id);
+
+//case and diacritics insensitive search of name part, at most limit students ordered by match:
+//exact name, name prefix, word prefix, substring
+	List<Student> findStudentsByName(String namePart, int limit);
 }
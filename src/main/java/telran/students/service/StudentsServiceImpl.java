@@ -2,15 +2,24 @@ package telran.students.service;
 
 import java.time.LocalDate;
 import java.time.ZoneId;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import org.bson.Document;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.data.mongodb.core.aggregation.AccumulatorOperators;
 import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
 import org.springframework.data.mongodb.core.aggregation.ArrayOperators;
 import org.springframework.data.mongodb.core.aggregation.BucketOperation;
 import org.springframework.data.mongodb.core.aggregation.GroupOperation;
@@ -20,6 +29,8 @@ import org.springframework.data.mongodb.core.aggregation.ProjectionOperation;
 import org.springframework.data.mongodb.core.aggregation.SortOperation;
 import org.springframework.data.mongodb.core.aggregation.UnwindOperation;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -30,6 +41,7 @@ import telran.exceptions.NotFoundException;
 import telran.students.dto.*;
 import telran.students.model.StudentDoc;
 import telran.students.repo.StudentRepo;
+import telran.students.service.QueryExecutor.QueryScope;
 
 @Service
 @Slf4j
@@ -38,6 +50,10 @@ public class StudentsServiceImpl implements StudentsService {
 	private static final int SCORE_BEST_STUDENT = 80;
 	final StudentRepo studentRepo;
 	final MongoTemplate mongoTemplate;
+	final MarksArchiveService marksArchiveService;
+	final ApplicationEventPublisher eventPublisher;
+	final QueryExecutor queryExecutor;
+	final StudentsNameIndex studentsNameIndex;
 
 	@Override
 	@Transactional
@@ -47,31 +63,40 @@ public class StudentsServiceImpl implements StudentsService {
 			throw new IllegalStateException(String.format("Student %d already exists", id));
 		}
 		studentRepo.save(StudentDoc.of(student));
+		// the name index is updated after the commit
+		eventPublisher.publishEvent(new StudentAddedEvent(id, student.name()));
 		log.debug("saved {}", student);
 		return student;
 	}
 
 	@Override
 	public Student updatePhone(long id, String phone) {
-		StudentDoc studentDoc = getStudent(id);
+		// atomic update, saving the whole document would overwrite marks changed concurrently
+		Query query = new Query(Criteria.where("id").is(id));
+		query.fields().include("name", "phone");
+		StudentDoc studentDoc = mongoTemplate.findAndModify(query, new Update().set("phone", phone),
+				StudentDoc.class);
+		if (studentDoc == null) {
+			throw new NotFoundException(String.format("Student %d not found", id));
+		}
 		String oldPhone = studentDoc.getPhone();
 		log.debug("student {}, old phone number {}, new phone number {}", id, oldPhone, phone);
 		studentDoc.setPhone(phone);
-		studentRepo.save(studentDoc);
 		return studentDoc.build();
 	}
 
-	private StudentDoc getStudent(long id) {
-		return studentRepo.findById(id)
-				.orElseThrow(() -> new NotFoundException(String.format("Student %d not found", id)));
-	}
-
 	@Override
 	@Transactional
 	public List<Mark> addMark(long id, Mark mark) {
-		StudentDoc studentDoc = getStudent(id);
-		studentDoc.addMark(mark);
-		studentRepo.save(studentDoc);
+		Query query = new Query(Criteria.where("id").is(id));
+		query.fields().include("marks");
+		StudentDoc studentDoc = mongoTemplate.findAndModify(query, new Update().push("marks", mark),
+				FindAndModifyOptions.options().returnNew(true), StudentDoc.class);
+		if (studentDoc == null) {
+			throw new NotFoundException(String.format("Student %d not found", id));
+		}
+		// the score sketches are updated after the commit
+		eventPublisher.publishEvent(new MarkAddedEvent(id, mark));
 		log.debug("student {}, added mark {}", id, mark);
 		return studentDoc.getMarks();
 	}
@@ -84,6 +109,8 @@ public class StudentsServiceImpl implements StudentsService {
 			throw new NotFoundException(String.format("student %d not found", id));
 		}
 		studentRepo.deleteById(id);
+		marksArchiveService.removeArchivedMarks(id);
+		eventPublisher.publishEvent(new StudentRemovedEvent(id));
 		log.debug("removed student {}, marks {}", id, studentDoc.getMarks());
 		return studentDoc.build();
 	}
@@ -131,7 +158,8 @@ public class StudentsServiceImpl implements StudentsService {
 	@Override
 	public List<Student> getStudentsFewMarks(int thresholdMarks) {
 		List<IdNamePhone> students = studentRepo.findByFewMarks(thresholdMarks);
-
+		// the students are deleted by the query
+		students.forEach(s -> eventPublisher.publishEvent(new StudentRemovedEvent(s.getId())));
 		return getStudents(students);
 	}
 
@@ -154,17 +182,24 @@ public class StudentsServiceImpl implements StudentsService {
 
 	@Override
 	public List<Mark> getStudentSubjectMarks(long id, String subject) {
-		if (!studentRepo.existsById(id)) {
-			throw new NotFoundException(String.format("student with id %d not found", id));
-		}
 		MatchOperation matchStudent = Aggregation.match(Criteria.where("id").is(id));
 		UnwindOperation unwindOperation = Aggregation.unwind("marks");
 		MatchOperation matchMarksSubject = Aggregation.match(Criteria.where("marks.subject").is(subject));
 		ProjectionOperation projectionOperation = Aggregation.project("marks.score", "marks.date");
 		Aggregation pipeLine = Aggregation.newAggregation(matchStudent, unwindOperation, matchMarksSubject,
 				projectionOperation);
-		var aggregationResult = mongoTemplate.aggregate(pipeLine, StudentDoc.class, Document.class);
-		List<Document> listDocuments = aggregationResult.getMappedResults();
+		List<Document> listDocuments;
+		// existence check and aggregation are independent queries
+		try (QueryScope scope = queryExecutor.open()) {
+			Supplier<Boolean> exists = scope.fork(() -> studentRepo.existsById(id));
+			Supplier<List<Document>> documents = scope
+					.fork(() -> mongoTemplate.aggregate(pipeLine, StudentDoc.class, Document.class).getMappedResults());
+			scope.join();
+			if (!exists.get()) {
+				throw new NotFoundException(String.format("student with id %d not found", id));
+			}
+			listDocuments = documents.get();
+		}
 		log.debug("listDocuments: {}", listDocuments);
 		List<Mark> result = listDocuments.stream().map(d -> new Mark(subject,
 				d.getDate("date").toInstant().atZone(ZoneId.systemDefault()).toLocalDate(), d.getInteger("score")))
@@ -176,12 +211,11 @@ public class StudentsServiceImpl implements StudentsService {
 
 	@Override
 	public List<NameAvgScore> getStudentAvgScore(int avgScoreThreshold) {
-		UnwindOperation unwindOperation = Aggregation.unwind("marks");
-		GroupOperation groupOperation = Aggregation.group("name").avg("marks.score").as("avgScore");
 		MatchOperation matchOperation = Aggregation.match(Criteria.where("avgScore").gt(avgScoreThreshold));
 		SortOperation sortOperation = Aggregation.sort(Direction.DESC, "avgScore");
-		Aggregation pipeline = Aggregation.newAggregation(unwindOperation, groupOperation, matchOperation,
-				sortOperation);
+		List<AggregationOperation> operations = new ArrayList<>(getAvgScoreOperations());
+		operations.addAll(List.of(matchOperation, sortOperation));
+		Aggregation pipeline = Aggregation.newAggregation(operations);
 
 		List<NameAvgScore> result = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class)
 				.getMappedResults().stream()
@@ -196,23 +230,36 @@ public class StudentsServiceImpl implements StudentsService {
 		// returns list of Mark objects of the required student at the given dates
 		// Filtering and projection should be done at DB server
 		// LocalDate from and LocalDate to is checking on Controller and from less than to
-		if (!studentRepo.existsById(id)) {
-			throw new NotFoundException(String.format("Student with id %d not found", id));
-		}
+		// marks older than the archiving horizon may be moved into the archive
 		MatchOperation matchOperation = Aggregation.match(Criteria.where("id").is(id));
 		UnwindOperation unwindOperation = Aggregation.unwind("marks");
 		MatchOperation matchDates = Aggregation.match(Criteria.where("marks.date").gte(from).lte(to));
 		ProjectionOperation projectionOperation = Aggregation.project("marks.score", "marks.date", "marks.subject");
 		Aggregation pipeline = Aggregation.newAggregation(matchOperation, unwindOperation, matchDates,
 				projectionOperation);
-		var aggregationResult = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class);
-		List<Document> listDocuments = aggregationResult.getMappedResults();
+		List<Document> listDocuments;
+		List<Mark> res;
+		try (QueryScope scope = queryExecutor.open()) {
+			Supplier<Boolean> exists = scope.fork(() -> studentRepo.existsById(id));
+			Supplier<List<Document>> documents = scope
+					.fork(() -> mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class).getMappedResults());
+			// the horizon is looked up in the same fork, concurrently with the other queries
+			Supplier<List<Mark>> archivedMarks = scope.fork(() -> from.isBefore(marksArchiveService.getHorizon())
+					? marksArchiveService.getArchivedMarks(id, from, to)
+					: List.of());
+			scope.join();
+			if (!exists.get()) {
+				throw new NotFoundException(String.format("Student with id %d not found", id));
+			}
+			listDocuments = documents.get();
+			res = new ArrayList<>(archivedMarks.get());
+		}
 		log.debug("listDocuments: {}", listDocuments);
-		List<Mark> res = listDocuments.stream()
+		listDocuments.stream()
 				.map(d -> new Mark(d.getString("subject"),
 						d.getDate("date").toInstant().atZone(ZoneId.systemDefault()).toLocalDate(),
 						d.getInteger("score")))
-				.toList();
+				.forEach(res::add);
 		log.debug("marks: {}", res);
 		return res;
 	}
@@ -223,14 +270,13 @@ public class StudentsServiceImpl implements StudentsService {
 		// returns list of a given number of the best students
 		// Best students are the ones who have most scores greater than 80
 		/*************************************/
-		UnwindOperation unwind = Aggregation.unwind("marks");
-		GroupOperation group = Aggregation.group("name").avg("marks.score").as("avgScore");
 		MatchOperation match = Aggregation.match(Criteria.where("avgScore").gte(SCORE_BEST_STUDENT));
-		ProjectionOperation projection = Aggregation.project("name", "avgScore");
 		SortOperation sort = Aggregation.sort(Direction.DESC, "avgScore");
 		LimitOperation limit = Aggregation.limit(nStudents);
+		List<AggregationOperation> operations = new ArrayList<>(getAvgScoreOperations());
+		operations.addAll(List.of(match, sort, limit));
 
-		Aggregation pipeline = Aggregation.newAggregation(unwind, group, match, projection, limit, sort);
+		Aggregation pipeline = Aggregation.newAggregation(operations);
 		var aggregationResult = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class);
 		List<Document> listDocuments = aggregationResult.getMappedResults();
 		log.debug("listDocuments: {}", listDocuments);
@@ -250,8 +296,8 @@ public class StudentsServiceImpl implements StudentsService {
 		// AccumulatorOperators.Sum) and ProjectionOperation for adding new fields with
 		// computed values
 		/*************************************/
-		AggregationExpression agrExpr = AggregationExpression.from(AccumulatorOperators.Sum.sumOf("marks.score"));
-		ProjectionOperation projection = Aggregation.project("name").and(agrExpr).as("scores");
+		// archived marks are counted through the sums of the summaries
+		ProjectionOperation projection = Aggregation.project("name").and(getScoresSum()).as("scores");
 		SortOperation sort = Aggregation.sort(Direction.ASC, "scores");
 		LimitOperation limit = Aggregation.limit(nStudents);
 
@@ -265,4 +311,96 @@ public class StudentsServiceImpl implements StudentsService {
 
 	}
 
+	@Override
+	public StudentDashboard getStudentDashboard(long id) {
+		StudentDoc studentDoc;
+		AvgScoreRank avgScoreRank;
+		// the student is fetched by one query in the calling thread while the rank is computed
+		try (QueryScope scope = queryExecutor.open()) {
+			Supplier<AvgScoreRank> rankQuery = scope.fork(() -> getAvgScoreRank(id));
+			studentDoc = studentRepo.findById(id).orElse(null);
+			scope.join();
+			avgScoreRank = rankQuery.get();
+		}
+		if (studentDoc == null) {
+			throw new NotFoundException(String.format("student %d not found", id));
+		}
+		StudentDashboard res = new StudentDashboard(studentDoc.build(), studentDoc.getMarks(),
+				avgScoreRank.avgScore(), avgScoreRank.rank());
+		log.debug("dashboard: {}", res);
+		return res;
+	}
+
+	@Override
+	public List<Student> findStudentsByName(String namePart, int limit) {
+		// a student removed after the search is skipped, so more hits are requested until limit students
+		// are found or the index has no more hits
+		int nHits = limit;
+		List<IdNamePhone> found;
+		boolean hasMoreHits;
+		do {
+			List<TrigramIndex.Hit> hits = studentsNameIndex.search(namePart, nHits);
+			List<Long> ids = hits.stream().map(TrigramIndex.Hit::id).toList();
+			Map<Long, IdNamePhone> students = studentRepo.findByIdIn(ids).stream()
+					.collect(Collectors.toMap(IdNamePhone::getId, s -> s));
+			found = ids.stream().map(students::get).filter(Objects::nonNull).toList();
+			hasMoreHits = hits.size() == nHits;
+			nHits *= 2;
+		} while (found.size() < limit && hasMoreHits);
+		List<Student> res = getStudents(found.size() > limit ? found.subList(0, limit) : found);
+		log.debug("{} students found by name part {}", res.size(), namePart);
+		return res;
+	}
+
+	private record AvgScoreRank(Double avgScore, long rank) {
+	}
+
+	// rank is 1 + number of the students having greater average score;
+	// the count is an aggregation over the whole collection (averages of all the students are computed,
+	// no index can serve it), so the cost of a dashboard grows linearly with the number of students
+	private AvgScoreRank getAvgScoreRank(long id) {
+		MatchOperation matchStudent = Aggregation.match(Criteria.where("id").is(id));
+		ProjectionOperation projectScores = Aggregation.project().and(getScoresSum()).as("scores")
+				.and(getScoresCount()).as("count");
+		Document studentScores = mongoTemplate
+				.aggregate(Aggregation.newAggregation(matchStudent, projectScores), StudentDoc.class, Document.class)
+				.getUniqueMappedResult();
+		AvgScoreRank res = new AvgScoreRank(null, 0);
+		if (studentScores != null && ((Number) studentScores.get("count")).longValue() > 0) {
+			double avgScore = ((Number) studentScores.get("scores")).doubleValue()
+					/ ((Number) studentScores.get("count")).longValue();
+			MatchOperation matchHavingMarks = Aggregation.match(Criteria.where("count").gt(0));
+			ProjectionOperation projectAvg = Aggregation.project()
+					.and(ArithmeticOperators.Divide.valueOf("scores").divideBy("count")).as("avgScore");
+			MatchOperation matchGreater = Aggregation.match(Criteria.where("avgScore").gt(avgScore));
+			Document greater = mongoTemplate.aggregate(
+					Aggregation.newAggregation(projectScores, matchHavingMarks, projectAvg, matchGreater,
+							Aggregation.count().as("count")),
+					StudentDoc.class, Document.class).getUniqueMappedResult();
+			res = new AvgScoreRank(avgScore, greater == null ? 1 : ((Number) greater.get("count")).longValue() + 1);
+		}
+		return res;
+	}
+
+	// average score per name over the marks and the summaries of the archived marks
+	private List<AggregationOperation> getAvgScoreOperations() {
+		ProjectionOperation projectScores = Aggregation.project("name").and(getScoresSum()).as("scores")
+				.and(getScoresCount()).as("count");
+		MatchOperation matchHavingMarks = Aggregation.match(Criteria.where("count").gt(0));
+		GroupOperation group = Aggregation.group("name").sum("scores").as("scores").sum("count").as("count");
+		ProjectionOperation projectAvg = Aggregation.project()
+				.and(ArithmeticOperators.Divide.valueOf("scores").divideBy("count")).as("avgScore");
+		return List.of(projectScores, matchHavingMarks, group, projectAvg);
+	}
+
+	private AggregationExpression getScoresSum() {
+		return ArithmeticOperators.Add.valueOf(AccumulatorOperators.Sum.sumOf("marks.score"))
+				.add(AccumulatorOperators.Sum.sumOf("summaries.sum"));
+	}
+
+	private AggregationExpression getScoresCount() {
+		return ArithmeticOperators.Add.valueOf(ArrayOperators.Size.lengthOfArray("marks"))
+				.add(AccumulatorOperators.Sum.sumOf("summaries.count"));
+	}
+
 }
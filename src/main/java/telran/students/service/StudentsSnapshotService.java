@@ -0,0 +1,24 @@
+package telran.students.service;
+
+import java.nio.file.Path;
+
+import telran.students.dto.SnapshotInfo;
+import telran.students.dto.SnapshotProgress;
+
+public interface StudentsSnapshotService {
+//writes the students collection into the given directory: one binary file per partition of ids,
+//partitions are read in parallel; manifest.json keeps checksums of the files and the
+//secondary indexes of the collection; the marks archive and its horizon are dumped with the students
+	SnapshotInfo dump(Path dir, int nPartitions);
+
+//replaces the students collection with the snapshot from the given directory
+//all the files are verified against their checksums before the collection is dropped,
+//the files are loaded in parallel by nWorkers, the indexes are created after the load
+//the marks archive and its horizon are replaced by the ones of the snapshot (a snapshot without the archive
+//is rejected if its students have archived marks);
+//the name index and the score sketches are rebuilt from the restored collection
+	SnapshotInfo restore(Path dir, int nWorkers);
+
+//progress of the running (or the last) dump or restore
+	SnapshotProgress getProgress();
+}
@@ -0,0 +1,298 @@
+package telran.students.service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.SnapshotInfo;
+import telran.students.dto.SnapshotProgress;
+import telran.students.model.ArchiveJobState;
+import telran.students.model.ArchivedMarksDoc;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StudentsSnapshotServiceImpl implements StudentsSnapshotService {
+	static final String MANIFEST = "manifest.json";
+	static final String FILE_NAME_FORMAT = "students-%03d.snap";
+	static final String ARCHIVE_FILE_NAME = "marks-archive.snap";
+	static final String ID_INDEX = "_id_";
+	static final long PROGRESS_LOG_STEP = 100_000;
+	final StudentRepo studentRepo;
+	final MongoTemplate mongoTemplate;
+	final StudentsNameIndex studentsNameIndex;
+	final ScoresAnalyticsService scoresAnalyticsService;
+	final MarksArchiveService marksArchiveService;
+	@Value("${students.snapshot.cursor.batch.size:1000}")
+	int cursorBatchSize;
+	@Value("${students.snapshot.insert.batch.size:1000}")
+	int insertBatchSize;
+	private final AtomicLong processed = new AtomicLong();
+	private volatile String operation = "none";
+	private volatile long total;
+
+	@Override
+	public SnapshotInfo dump(Path dir, int nPartitions) {
+		if (nPartitions < 1) {
+			throw new IllegalArgumentException("number of partitions should be positive");
+		}
+		try {
+			Files.createDirectories(dir);
+			List<IdRange> ranges = IdRange.split(studentRepo, nPartitions);
+			startProgress("dump", studentRepo.count());
+			List<Callable<Document>> tasks = IntStream.range(0, ranges.size()).mapToObj(
+					i -> (Callable<Document>) () -> dumpRange(ranges.get(i), dir, String.format(FILE_NAME_FORMAT, i)))
+					.toList();
+			// the horizon is read first: marks archived after it are in the archive and not in the students
+			LocalDate archivedHorizon = marksArchiveService.getHorizon();
+			List<Document> partitions = ParallelTasks.invokeAll(tasks, tasks.size());
+			SnapshotInfo res = getInfo(partitions);
+			Document manifest = new Document("version", SnapshotFile.VERSION).append("students", res.students())
+					.append("partitions", partitions).append("indexes", getIndexes())
+					.append("archive", dumpArchive(dir)).append("archivedHorizon",
+							archivedHorizon.equals(LocalDate.MIN) ? null : archivedHorizon.toString());
+			Files.writeString(dir.resolve(MANIFEST), manifest.toJson());
+			log.info("dump to {} done: {}", dir, res);
+			return res;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public SnapshotInfo restore(Path dir, int nWorkers) {
+		if (nWorkers < 1) {
+			throw new IllegalArgumentException("number of workers should be positive");
+		}
+		try {
+			Document manifest = Document.parse(Files.readString(dir.resolve(MANIFEST)));
+			List<Document> partitions = manifest.getList("partitions", Document.class);
+			long nStudents = manifest.get("students", Number.class).longValue();
+			Document archive = manifest.get("archive", Document.class);
+			startProgress("verify", nStudents);
+			ParallelTasks.invokeAll(getTasks(partitions, p -> verifyPartition(dir, p, archive != null)), nWorkers);
+			if (archive != null) {
+				verifyArchive(dir, archive);
+			}
+			mongoTemplate.dropCollection(StudentDoc.class);
+			startProgress("restore", nStudents);
+			ParallelTasks.invokeAll(getTasks(partitions, p -> restorePartition(dir, p)), nWorkers);
+			createIndexes(manifest.getList("indexes", Document.class));
+			restoreArchive(dir, archive, manifest.getString("archivedHorizon"));
+			studentsNameIndex.rebuild();
+			scoresAnalyticsService.rebuildSketches();
+			SnapshotInfo res = getInfo(partitions);
+			log.info("restore from {} done: {}", dir, res);
+			return res;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	@Override
+	public SnapshotProgress getProgress() {
+		return new SnapshotProgress(operation, processed.get(), total);
+	}
+
+	private Document dumpRange(IdRange range, Path dir, String fileName) throws IOException {
+		Query query = new Query(range.criteria()).with(Sort.by("id")).cursorBatchSize(cursorBatchSize);
+		SnapshotFile.Writer writer = new SnapshotFile.Writer(dir.resolve(fileName));
+		try (writer; Stream<StudentDoc> students = mongoTemplate.stream(query, StudentDoc.class)) {
+			var iterator = students.iterator();
+			while (iterator.hasNext()) {
+				writer.write(iterator.next());
+				addProgress(1);
+			}
+		}
+		log.debug("partition {} dumped into {}, students {}, bytes {}", range, fileName, writer.count,
+				writer.bytes);
+		return new Document("file", fileName).append("students", writer.count).append("bytes", writer.bytes)
+				.append("crc", writer.getCrc());
+	}
+
+	private Document dumpArchive(Path dir) throws IOException {
+		Query query = new Query().with(Sort.by("id")).cursorBatchSize(cursorBatchSize);
+		SnapshotFile.Writer writer = new SnapshotFile.Writer(dir.resolve(ARCHIVE_FILE_NAME));
+		try (writer; Stream<ArchivedMarksDoc> archived = mongoTemplate.stream(query, ArchivedMarksDoc.class)) {
+			var iterator = archived.iterator();
+			while (iterator.hasNext()) {
+				writer.write(iterator.next());
+			}
+		}
+		log.debug("marks archive dumped into {}, documents {}, bytes {}", ARCHIVE_FILE_NAME, writer.count,
+				writer.bytes);
+		return new Document("file", ARCHIVE_FILE_NAME).append("documents", writer.count)
+				.append("bytes", writer.bytes).append("crc", writer.getCrc());
+	}
+
+	// a snapshot without the marks archive (dumped by a previous version) is accepted only if none
+	// of its students has archived marks, otherwise the restored students would lose them
+	private Void verifyPartition(Path dir, Document partition, boolean hasArchive) throws IOException {
+		try (SnapshotFile.Reader reader = new SnapshotFile.Reader(dir.resolve(partition.getString("file")))) {
+			while (reader.next()) {
+				if (!hasArchive && reader.get().getArchiveSeq() > 0) {
+					throw new IllegalStateException(String.format(
+							"%s has students with archived marks, but the snapshot has no marks archive",
+							partition.getString("file")));
+				}
+				addProgress(1);
+			}
+			if (reader.count != partition.get("students", Number.class).longValue()
+					|| reader.getCrc() != partition.get("crc", Number.class).longValue()) {
+				throw new IllegalStateException(
+						String.format("%s doesn`t match the manifest", partition.getString("file")));
+			}
+		}
+		return null;
+	}
+
+	private void verifyArchive(Path dir, Document archive) throws IOException {
+		try (SnapshotFile.Reader reader = new SnapshotFile.Reader(dir.resolve(archive.getString("file")))) {
+			while (reader.next()) {
+			}
+			if (reader.count != archive.get("documents", Number.class).longValue()
+					|| reader.getCrc() != archive.get("crc", Number.class).longValue()) {
+				throw new IllegalStateException(
+						String.format("%s doesn`t match the manifest", archive.getString("file")));
+			}
+		}
+	}
+
+	// the archive and the archived horizon of the snapshot replace the current ones
+	private void restoreArchive(Path dir, Document archive, String archivedHorizon) throws IOException {
+		mongoTemplate.remove(new Query(), ArchivedMarksDoc.class);
+		mongoTemplate.dropCollection(ArchiveJobState.class);
+		if (archive != null) {
+			List<ArchivedMarksDoc> batch = new ArrayList<>(insertBatchSize);
+			try (SnapshotFile.Reader reader = new SnapshotFile.Reader(dir.resolve(archive.getString("file")))) {
+				while (reader.next()) {
+					batch.add(reader.getArchived());
+					if (batch.size() == insertBatchSize) {
+						insertArchived(batch);
+					}
+				}
+			}
+			insertArchived(batch);
+		}
+		if (archivedHorizon != null) {
+			mongoTemplate.insert(new ArchiveJobState(MarksArchiveServiceImpl.JOB_ID, null, 0, true,
+					LocalDate.parse(archivedHorizon)));
+		}
+		log.debug("marks archive restored, archived horizon {}", archivedHorizon);
+	}
+
+	private void insertArchived(List<ArchivedMarksDoc> batch) {
+		if (!batch.isEmpty()) {
+			mongoTemplate.bulkOps(BulkMode.UNORDERED, ArchivedMarksDoc.class).insert(batch).execute();
+			batch.clear();
+		}
+	}
+
+	private Void restorePartition(Path dir, Document partition) throws IOException {
+		List<StudentDoc> batch = new ArrayList<>(insertBatchSize);
+		try (SnapshotFile.Reader reader = new SnapshotFile.Reader(dir.resolve(partition.getString("file")))) {
+			while (reader.next()) {
+				batch.add(reader.get());
+				if (batch.size() == insertBatchSize) {
+					insert(batch);
+				}
+			}
+		}
+		insert(batch);
+		return null;
+	}
+
+	private void insert(List<StudentDoc> batch) {
+		if (!batch.isEmpty()) {
+			mongoTemplate.bulkOps(BulkMode.UNORDERED, StudentDoc.class).insert(batch).execute();
+			addProgress(batch.size());
+			batch.clear();
+		}
+	}
+
+	private List<Document> getIndexes() {
+		List<Document> res = new ArrayList<>();
+		getCollection().listIndexes().forEach(index -> {
+			if (!ID_INDEX.equals(index.getString("name"))) {
+				res.add(index);
+			}
+		});
+		return res;
+	}
+
+	private void createIndexes(List<Document> indexes) {
+		if (!indexes.isEmpty()) {
+			getCollection().createIndexes(indexes.stream().map(this::toIndexModel).toList());
+			log.debug("created indexes {}", indexes);
+		}
+	}
+
+	private IndexModel toIndexModel(Document index) {
+		IndexOptions options = new IndexOptions().name(index.getString("name"))
+				.unique(index.getBoolean("unique", false)).sparse(index.getBoolean("sparse", false));
+		if (index.containsKey("partialFilterExpression")) {
+			options.partialFilterExpression(index.get("partialFilterExpression", Document.class));
+		}
+		if (index.containsKey("expireAfterSeconds")) {
+			options.expireAfter(index.get("expireAfterSeconds", Number.class).longValue(), TimeUnit.SECONDS);
+		}
+		return new IndexModel(index.get("key", Document.class), options);
+	}
+
+	private MongoCollection<Document> getCollection() {
+		return mongoTemplate.getCollection(mongoTemplate.getCollectionName(StudentDoc.class));
+	}
+
+	private List<Callable<Void>> getTasks(List<Document> partitions, PartitionTask task) {
+		return partitions.stream().map(p -> (Callable<Void>) () -> task.run(p)).toList();
+	}
+
+	private SnapshotInfo getInfo(List<Document> partitions) {
+		return new SnapshotInfo(partitions.size(),
+				partitions.stream().mapToLong(p -> p.get("students", Number.class).longValue()).sum(),
+				partitions.stream().mapToLong(p -> p.get("bytes", Number.class).longValue()).sum());
+	}
+
+	private void startProgress(String operation, long total) {
+		this.operation = operation;
+		this.total = total;
+		processed.set(0);
+	}
+
+	private void addProgress(long delta) {
+		long value = processed.addAndGet(delta);
+		if (value / PROGRESS_LOG_STEP != (value - delta) / PROGRESS_LOG_STEP) {
+			log.info("{}: {} of {} students", operation, value, total);
+		}
+	}
+
+	@FunctionalInterface
+	private interface PartitionTask {
+		Void run(Document partition) throws IOException;
+	}
+}
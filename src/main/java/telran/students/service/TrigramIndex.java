@@ -0,0 +1,310 @@
+package telran.students.service;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+//in-memory substring index of the students names
+//names are normalized (lower case, no diacritics); every name is a document having sequential number,
+//each trigram (3 successive chars) of the normalized names has postings list - ascending numbers
+//of the documents containing it, kept in int arrays
+//search intersects postings lists of the query trigrams and checks the candidates (queries shorter
+//than 3 chars scan all the names); matches are ranked: exact name, name prefix, word prefix, substring,
+//then by name and id
+//removed documents are marked by null name (tombstone) until compact()
+public class TrigramIndex {
+	public static final int EXACT = 0;
+	public static final int PREFIX = 1;
+	public static final int WORD_PREFIX = 2;
+	public static final int SUBSTRING = 3;
+	static final int GRAM_LENGTH = 3;
+	static final int INITIAL_CAPACITY = 1024;
+	static final int INITIAL_POSTINGS_CAPACITY = 4;
+	static final Pattern COMBINING_MARKS = Pattern.compile("\\p{M}+");
+	static final Comparator<Hit> HITS_ORDER = Comparator.comparingInt(Hit::rank).thenComparing(Hit::name)
+			.thenComparingLong(Hit::id);
+	final ReadWriteLock lock = new ReentrantReadWriteLock();
+	long[] ids = new long[INITIAL_CAPACITY];
+	String[] names = new String[INITIAL_CAPACITY];
+	int nDocs;
+	int nRemoved;
+	final LongIntMap docs = new LongIntMap();
+	final LongIntMap trigrams = new LongIntMap();
+	int[][] postings = new int[INITIAL_CAPACITY][];
+	int[] postingsSizes = new int[INITIAL_CAPACITY];
+	int nTrigrams;
+
+	// name is normalized
+	public record Hit(long id, String name, int rank) {
+	}
+
+	public static String normalize(String name) {
+		return name == null ? ""
+				: COMBINING_MARKS.matcher(Normalizer.normalize(name.toLowerCase(Locale.ROOT), Normalizer.Form.NFD))
+						.replaceAll("");
+	}
+
+	// adds or replaces name of the given id
+	public void add(long id, String name) {
+		String normalized = normalize(name);
+		lock.writeLock().lock();
+		try {
+			removeDoc(id);
+			int doc = nDocs++;
+			if (doc == ids.length) {
+				ids = Arrays.copyOf(ids, doc * 2);
+				names = Arrays.copyOf(names, doc * 2);
+			}
+			ids[doc] = id;
+			names[doc] = normalized;
+			docs.put(id, doc);
+			addPostings(doc, normalized);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public boolean remove(long id) {
+		lock.writeLock().lock();
+		try {
+			boolean res = removeDoc(id);
+			if (nRemoved > INITIAL_CAPACITY && nRemoved > nDocs / 2) {
+				rebuild();
+			}
+			return res;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return nDocs - nRemoved;
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// at most limit best matches of the given name part
+	public List<Hit> search(String namePart, int limit) {
+		Scan scan = new Scan(namePart, limit);
+		if (!scan.query.isEmpty()) {
+			lock.readLock().lock();
+			try {
+				if (scan.query.length() < GRAM_LENGTH) {
+					for (int doc = 0; doc < nDocs; doc++) {
+						scan.check(ids[doc], names[doc]);
+					}
+				} else {
+					int[] candidates = getCandidates(scan.query);
+					for (int doc : candidates) {
+						if (doc < 0) {
+							break;
+						}
+						scan.check(ids[doc], names[doc]);
+					}
+				}
+			} finally {
+				lock.readLock().unlock();
+			}
+		}
+		return scan.getHits();
+	}
+
+	// drops tombstones and trims the arrays to the actual sizes (after bulk loading)
+	public void compact() {
+		lock.writeLock().lock();
+		try {
+			rebuild();
+			ids = Arrays.copyOf(ids, Math.max(nDocs, 1));
+			names = Arrays.copyOf(names, Math.max(nDocs, 1));
+			for (int i = 0; i < nTrigrams; i++) {
+				postings[i] = Arrays.copyOf(postings[i], postingsSizes[i]);
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// best matches of the name part among the checked names, same matching and order as search;
+	// used directly for the names not indexed
+	static class Scan {
+		final String query;
+		final int limit;
+		final PriorityQueue<Hit> best;
+
+		Scan(String namePart, int limit) {
+			if (limit <= 0) {
+				throw new IllegalArgumentException(String.format("limit %d must be positive", limit));
+			}
+			this.query = normalize(namePart);
+			this.limit = limit;
+			best = new PriorityQueue<>(limit + 1, HITS_ORDER.reversed());
+		}
+
+		// name is normalized, null name (tombstone) is skipped
+		void check(long id, String name) {
+			if (name != null && !query.isEmpty()) {
+				int index = name.indexOf(query);
+				if (index >= 0) {
+					int rank = getRank(name, query, index);
+					Hit worst = best.size() < limit ? null : best.peek();
+					if (worst == null || isBetter(rank, name, id, worst)) {
+						best.add(new Hit(id, name, rank));
+						if (best.size() > limit) {
+							best.poll();
+						}
+					}
+				}
+			}
+		}
+
+		List<Hit> getHits() {
+			List<Hit> res = new ArrayList<>(best);
+			res.sort(HITS_ORDER);
+			return res;
+		}
+	}
+
+	// rank of the normalized name containing the normalized query at the given index
+	static int getRank(String name, String query, int index) {
+		int res = SUBSTRING;
+		if (index == 0) {
+			res = name.length() == query.length() ? EXACT : PREFIX;
+		} else {
+			while (index > 0 && Character.isLetterOrDigit(name.charAt(index - 1))) {
+				index = name.indexOf(query, index + 1);
+			}
+			if (index > 0) {
+				res = WORD_PREFIX;
+			}
+		}
+		return res;
+	}
+
+	// same order as HITS_ORDER without creating hit
+	private static boolean isBetter(int rank, String name, long id, Hit hit) {
+		int res = Integer.compare(rank, hit.rank());
+		if (res == 0) {
+			res = name.compareTo(hit.name());
+		}
+		return res < 0 || res == 0 && id < hit.id();
+	}
+
+	// documents containing all the trigrams of the query, -1 after the last one
+	private int[] getCandidates(String query) {
+		int nGrams = query.length() - GRAM_LENGTH + 1;
+		int[] lists = new int[nGrams];
+		for (int i = 0; i < nGrams; i++) {
+			int trigram = trigrams.get(trigram(query, i));
+			if (trigram == LongIntMap.NO_VALUE) {
+				return new int[0];
+			}
+			lists[i] = trigram;
+		}
+		// the shortest list first, intersection can`t be longer than it
+		Integer[] order = new Integer[nGrams];
+		Arrays.setAll(order, i -> lists[i]);
+		Arrays.sort(order, Comparator.comparingInt(t -> postingsSizes[t]));
+		int first = order[0];
+		int[] res = Arrays.copyOf(postings[first], postingsSizes[first] + 1);
+		int size = postingsSizes[first];
+		for (int i = 1; i < nGrams && size > 0; i++) {
+			size = intersect(res, size, postings[order[i]], postingsSizes[order[i]]);
+		}
+		res[size] = -1;
+		return res;
+	}
+
+	// intersection of two ascending lists written into the first one; returns its size
+	private static int intersect(int[] list, int size, int[] other, int otherSize) {
+		int res = 0;
+		int j = 0;
+		for (int i = 0; i < size && j < otherSize; i++) {
+			while (j < otherSize && other[j] < list[i]) {
+				j++;
+			}
+			if (j < otherSize && other[j] == list[i]) {
+				list[res++] = list[i];
+			}
+		}
+		return res;
+	}
+
+	private boolean removeDoc(long id) {
+		int doc = docs.remove(id);
+		boolean res = doc != LongIntMap.NO_VALUE;
+		if (res) {
+			names[doc] = null;
+			nRemoved++;
+		}
+		return res;
+	}
+
+	private void addPostings(int doc, String name) {
+		for (int i = 0; i + GRAM_LENGTH <= name.length(); i++) {
+			long key = trigram(name, i);
+			int trigram = trigrams.get(key);
+			if (trigram == LongIntMap.NO_VALUE) {
+				trigram = newTrigram();
+				trigrams.put(key, trigram);
+			}
+			int size = postingsSizes[trigram];
+			int[] list = postings[trigram];
+			// the same trigram may repeat in a name
+			if (size == 0 || list[size - 1] != doc) {
+				if (size == list.length) {
+					list = postings[trigram] = Arrays.copyOf(list, Math.max(size * 2, INITIAL_POSTINGS_CAPACITY));
+				}
+				list[size] = doc;
+				postingsSizes[trigram] = size + 1;
+			}
+		}
+	}
+
+	private int newTrigram() {
+		if (nTrigrams == postings.length) {
+			postings = Arrays.copyOf(postings, nTrigrams * 2);
+			postingsSizes = Arrays.copyOf(postingsSizes, nTrigrams * 2);
+		}
+		postings[nTrigrams] = new int[INITIAL_POSTINGS_CAPACITY];
+		return nTrigrams++;
+	}
+
+	// renumbers the live documents and recreates the postings
+	private void rebuild() {
+		if (nRemoved > 0) {
+			int nLive = 0;
+			docs.clear();
+			for (int doc = 0; doc < nDocs; doc++) {
+				if (names[doc] != null) {
+					ids[nLive] = ids[doc];
+					names[nLive] = names[doc];
+					docs.put(ids[nLive], nLive);
+					nLive++;
+				}
+			}
+			Arrays.fill(names, nLive, nDocs, null);
+			nDocs = nLive;
+			nRemoved = 0;
+			for (int i = 0; i < nTrigrams; i++) {
+				postingsSizes[i] = 0;
+			}
+			for (int doc = 0; doc < nDocs; doc++) {
+				addPostings(doc, names[doc]);
+			}
+		}
+	}
+
+	private static long trigram(String name, int index) {
+		return (long) name.charAt(index) << 32 | (long) name.charAt(index + 1) << 16 | name.charAt(index + 2);
+	}
+}
@@ -0,0 +1,44 @@
+package telran.students.service;
+
+import java.util.concurrent.StructuredTaskScope;
+import java.util.function.Supplier;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+//every forked query runs in its own virtual thread; the first failure cancels the other queries
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class StructuredQueryExecutor implements QueryExecutor {
+
+	@Override
+	public QueryScope open() {
+		return new StructuredQueryScope();
+	}
+
+	static class StructuredQueryScope implements QueryScope {
+		final StructuredTaskScope.ShutdownOnFailure scope = new StructuredTaskScope.ShutdownOnFailure();
+
+		@Override
+		public <T> Supplier<T> fork(Supplier<T> query) {
+			return scope.fork(query::get);
+		}
+
+		@Override
+		public void join() {
+			try {
+				scope.join().throwIfFailed(e -> e instanceof RuntimeException cause ? cause
+						: new IllegalStateException(e));
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("queries interrupted", e);
+			}
+		}
+
+		@Override
+		public void close() {
+			scope.close();
+		}
+	}
+
+}
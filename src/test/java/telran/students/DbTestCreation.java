@@ -5,10 +5,13 @@ import java.util.Arrays;
 import java.util.List;
 import java.util.stream.IntStream;
 
+import org.springframework.data.mongodb.core.MongoTemplate;
 import org.springframework.stereotype.Component;
 
 import lombok.RequiredArgsConstructor;
+import telran.students.repo.MarksArchiveRepo;
 import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsNameIndex;
 import telran.students.dto.*;
 import telran.students.model.*;
 
@@ -17,6 +20,9 @@ import telran.students.model.*;
 public class DbTestCreation {
 
 	final StudentRepo studentRepo;
+	final MarksArchiveRepo marksArchiveRepo;
+	final MongoTemplate mongoTemplate;
+	final StudentsNameIndex studentsNameIndex;
 //*************************
 	final static long ID_1 = 1l;
 	final static String NAME_1 = "name1";
@@ -107,9 +113,13 @@ public class DbTestCreation {
 	
 	public void createDB () {
 		studentRepo.deleteAll();
+		marksArchiveRepo.deleteAll();
+		mongoTemplate.dropCollection(ArchiveJobState.class);
+		mongoTemplate.dropCollection(ScoresSketchDoc.class);
 		List<StudentDoc> studentDocs = IntStream.range(0, students.length)
 		.mapToObj(this::indexToStudent).toList();
 		studentRepo.saveAll(studentDocs);
+		studentsNameIndex.rebuild();
 
 	}
 	public Mark[] getStudentMarks(long id) {
@@ -0,0 +1,77 @@
+package telran.students;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.HdrHistogram.Histogram;
+
+//throughput and latency percentiles per operation; latencies are recorded in nanoseconds
+//and reported in microseconds
+public class LatencyReport {
+	static final double NANOS_PER_MICRO = 1000.0;
+	final Map<String, Histogram> histograms;
+	final Map<String, Long> errors;
+	final Duration elapsed;
+
+	public LatencyReport(Map<String, Histogram> histograms, Map<String, Long> errors, Duration elapsed) {
+		this.histograms = new TreeMap<>(histograms);
+		this.errors = errors;
+		this.elapsed = elapsed;
+	}
+
+	public Histogram getHistogram(String operation) {
+		return histograms.get(operation);
+	}
+
+	public long getCount(String operation) {
+		Histogram histogram = histograms.get(operation);
+		return histogram == null ? 0 : histogram.getTotalCount();
+	}
+
+	public long getTotalCount() {
+		return histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+	}
+
+	public long getErrors(String operation) {
+		return errors.getOrDefault(operation, 0l);
+	}
+
+	public double getThroughput(String operation) {
+		return getCount(operation) * (double) TimeUnit.SECONDS.toNanos(1) / elapsed.toNanos();
+	}
+
+	public double getTotalThroughput() {
+		return getTotalCount() * (double) TimeUnit.SECONDS.toNanos(1) / elapsed.toNanos();
+	}
+
+	public void print(PrintStream out) {
+		out.printf("elapsed %s, total operations %d%n", elapsed, getTotalCount());
+		out.printf("%-28s %10s %8s %10s %10s %10s %10s %10s %10s%n", "operation", "count", "errors", "ops/s",
+				"p50 us", "p95 us", "p99 us", "p999 us", "max us");
+		histograms.forEach((operation, histogram) -> out.printf(
+				"%-28s %10d %8d %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f%n", operation, histogram.getTotalCount(),
+				getErrors(operation), getThroughput(operation), micros(histogram, 50), micros(histogram, 95),
+				micros(histogram, 99), micros(histogram, 99.9), histogram.getMaxValue() / NANOS_PER_MICRO));
+	}
+
+	// one HdrHistogram percentile distribution file per operation, can be plotted with HistogramLogAnalyzer
+	// or the online HdrHistogram plotter
+	public void writeHistograms(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		for (var entry : histograms.entrySet()) {
+			try (PrintStream out = new PrintStream(Files.newOutputStream(dir.resolve(entry.getKey() + ".hgrm")))) {
+				entry.getValue().outputPercentileDistribution(out, NANOS_PER_MICRO);
+			}
+		}
+	}
+
+	private double micros(Histogram histogram, double percentile) {
+		return histogram.getValueAtPercentile(percentile) / NANOS_PER_MICRO;
+	}
+}
@@ -0,0 +1,177 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.reset;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.UpdateDefinition;
+
+import com.mongodb.client.result.UpdateResult;
+
+import telran.students.dto.*;
+import telran.students.model.ArchiveJobState;
+import telran.students.model.StudentDoc;
+import telran.students.repo.MarksArchiveRepo;
+import telran.students.repo.StudentRepo;
+import telran.students.service.MarksArchiveService;
+import telran.students.service.MarksArchiveServiceImpl;
+import telran.students.service.ScoresAnalyticsService;
+import telran.students.service.StudentsService;
+
+@SpringBootTest
+class MarksArchiveTests {
+	@Autowired
+	MarksArchiveService archiveService;
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	MarksArchiveRepo marksArchiveRepo;
+	@Autowired
+	ScoresAnalyticsService analyticsService;
+	@Autowired
+	DbTestCreation dbCreation;
+	@SpyBean
+	MongoTemplate mongoTemplate;
+	@MockBean
+	MongoTransactionManager transactionManager;
+
+	@BeforeEach
+	void setUp() {
+		dbCreation.createDB();
+	}
+
+	@Test
+	@DisplayName("Archive: marks before horizon are moved, rollups are left")
+	void archiveMarksTest() {
+		assertEquals(new ArchiveResult(6, 10), archiveService.archiveMarks(DbTestCreation.DATE_3));
+		assertIterableEquals(List.of(new Mark(DbTestCreation.SUBJECT_3, DbTestCreation.DATE_3, 90),
+				new Mark(DbTestCreation.SUBJECT_4, DbTestCreation.DATE_4, 90)), studentsService.getMarks(4));
+		assertTrue(studentsService.getMarks(DbTestCreation.ID_1).isEmpty());
+		StudentDoc studentDoc = studentRepo.findById(DbTestCreation.ID_1).orElseThrow();
+		assertEquals(1, studentDoc.getArchiveSeq());
+		assertIterableEquals(List.of(new MarksSummary(DbTestCreation.SUBJECT_1, "2023-10", 1, 80, 80, 80),
+				new MarksSummary(DbTestCreation.SUBJECT_1, "2023-11", 1, 90, 90, 90),
+				new MarksSummary(DbTestCreation.SUBJECT_2, "2023-11", 1, 70, 70, 70)), studentDoc.getSummaries());
+		assertEquals(6, marksArchiveRepo.count());
+	}
+
+	@Test
+	@DisplayName("Archive: scores statistics and marks at dates stay exact")
+	void queriesAfterArchiveTest() {
+		List<NameAvgScore> avgScores = studentsService.getStudentAvgScore(75);
+		List<String> best = studentsService.getBestStudents(3);
+		List<String> worst = studentsService.getWorstStudents(7);
+		List<Mark> marksAtDates = studentsService.getStudentMarksAtDates(4, DbTestCreation.DATE_1,
+				DbTestCreation.DATE_4);
+		archiveService.archiveMarks(DbTestCreation.DATE_3);
+		assertIterableEquals(avgScores, studentsService.getStudentAvgScore(75));
+		assertIterableEquals(best, studentsService.getBestStudents(3));
+		assertIterableEquals(worst, studentsService.getWorstStudents(7));
+		assertIterableEquals(marksAtDates,
+				studentsService.getStudentMarksAtDates(4, DbTestCreation.DATE_1, DbTestCreation.DATE_4));
+		assertIterableEquals(List.of(dbCreation.getStudentMarks(DbTestCreation.ID_1)), studentsService
+				.getStudentMarksAtDates(DbTestCreation.ID_1, DbTestCreation.DATE_1, DbTestCreation.DATE_2));
+	}
+
+	@Test
+	@DisplayName("Archive: marks count and threshold queries take the summaries into account")
+	void countQueriesAfterArchiveTest() {
+		List<Student> amountBetween = studentsService.getStudentsMarksAmountBetween(0, 1);
+		List<Student> allGood = studentsService.getStudentsAllGoodMarks(75);
+		List<Student> allGoodSubject = studentsService.getStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 80);
+		archiveService.archiveMarks(DbTestCreation.DATE_3);
+		assertIterableEquals(amountBetween, studentsService.getStudentsMarksAmountBetween(0, 1));
+		assertIterableEquals(allGood, studentsService.getStudentsAllGoodMarks(75));
+		assertIterableEquals(allGoodSubject,
+				studentsService.getStudentsAllGoodMarksSubject(DbTestCreation.SUBJECT_1, 80));
+		// student 1 has no live marks, but 3 archived ones
+		assertIterableEquals(List.of(dbCreation.getStudent(DbTestCreation.ID_2),
+				dbCreation.getStudent(DbTestCreation.ID_7)), studentsService.getStudentsFewMarks(2));
+	}
+
+	@Test
+	@DisplayName("Archive: repeated run and new marks after archive")
+	void repeatedArchiveTest() {
+		archiveService.archiveMarks(DbTestCreation.DATE_3);
+		assertEquals(new ArchiveResult(0, 0), archiveService.archiveMarks(DbTestCreation.DATE_3));
+		Mark mark = new Mark(DbTestCreation.SUBJECT_1, DbTestCreation.DATE_2, 60);
+		studentsService.addMark(DbTestCreation.ID_1, mark);
+		assertEquals(new ArchiveResult(1, 1), archiveService.archiveMarks(DbTestCreation.DATE_3));
+		StudentDoc studentDoc = studentRepo.findById(DbTestCreation.ID_1).orElseThrow();
+		assertEquals(2, studentDoc.getArchiveSeq());
+		assertTrue(studentDoc.getSummaries()
+				.contains(new MarksSummary(DbTestCreation.SUBJECT_1, "2023-11", 2, 150, 60, 90)));
+		assertEquals(List.of(new NameAvgScore(DbTestCreation.NAME_1, 75)), studentsService.getStudentAvgScore(0)
+				.stream().filter(s -> s.name().equals(DbTestCreation.NAME_1)).toList());
+	}
+
+	@Test
+	@DisplayName("Archive: removing student removes archived marks")
+	void removeStudentTest() {
+		archiveService.archiveMarks(DbTestCreation.DATE_3);
+		studentsService.removeStudent(DbTestCreation.ID_1);
+		assertEquals(5, marksArchiveRepo.count());
+	}
+
+	@Test
+	@DisplayName("Archive: documents of missed student updates are ignored by readers")
+	void missedStudentUpdateTest() {
+		List<Mark> marksAtDates = studentsService.getStudentMarksAtDates(4, DbTestCreation.DATE_1,
+				DbTestCreation.DATE_4);
+		long nScores = analyticsService.rebuildSketches();
+		doReturn(UpdateResult.acknowledged(0, 0l, null)).when(mongoTemplate).updateFirst(any(Query.class),
+				any(UpdateDefinition.class), eq(StudentDoc.class));
+		assertEquals(new ArchiveResult(0, 0), archiveService.archiveMarks(DbTestCreation.DATE_3));
+		assertEquals(6, marksArchiveRepo.count());
+		assertIterableEquals(marksAtDates,
+				studentsService.getStudentMarksAtDates(4, DbTestCreation.DATE_1, DbTestCreation.DATE_4));
+		assertEquals(nScores, analyticsService.rebuildSketches());
+		reset(mongoTemplate);
+		assertEquals(new ArchiveResult(6, 10), archiveService.archiveMarks(DbTestCreation.DATE_3));
+		assertEquals(6, marksArchiveRepo.count());
+		assertIterableEquals(marksAtDates,
+				studentsService.getStudentMarksAtDates(4, DbTestCreation.DATE_1, DbTestCreation.DATE_4));
+		assertEquals(nScores, analyticsService.rebuildSketches());
+	}
+
+	@Test
+	@DisplayName("Archive: horizon is kept in the database")
+	void horizonTest() {
+		assertEquals(LocalDate.MIN, archiveService.getHorizon());
+		archiveService.archiveMarks(DbTestCreation.DATE_3);
+		archiveService.archiveMarks(DbTestCreation.DATE_2);
+		assertEquals(DbTestCreation.DATE_3, archiveService.getHorizon());
+		// restarted service or another instance
+		MarksArchiveService otherService = new MarksArchiveServiceImpl(mongoTemplate, marksArchiveRepo);
+		assertEquals(DbTestCreation.DATE_3, otherService.getHorizon());
+	}
+
+	@Test
+	@DisplayName("Archive: interrupted run is resumed only with the same horizon")
+	void resumeTest() {
+		mongoTemplate.save(new ArchiveJobState("marks-archive", DbTestCreation.DATE_2, DbTestCreation.ID_4, false,
+				DbTestCreation.DATE_2));
+		assertEquals(new ArchiveResult(6, 10), archiveService.archiveMarks(DbTestCreation.DATE_3));
+		dbCreation.createDB();
+		mongoTemplate.save(new ArchiveJobState("marks-archive", DbTestCreation.DATE_3, DbTestCreation.ID_4, false,
+				DbTestCreation.DATE_3));
+		assertEquals(new ArchiveResult(2, 4), archiveService.archiveMarks(DbTestCreation.DATE_3));
+	}
+}
@@ -0,0 +1,193 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.bson.Document;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+
+import telran.students.WorkloadDriver.Mode;
+import telran.students.dto.*;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+import telran.students.service.ScoresAnalyticsService;
+import telran.students.service.StudentsService;
+
+@SpringBootTest
+class ScoresAnalyticsTests {
+	static final long N_STUDENTS = 20_000;
+	static final long N_STUDENTS_LOAD = Long.getLong("analytics.students", 200_000);
+	static final double SCORE_TOLERANCE = 1.0;
+	@Autowired
+	ScoresAnalyticsService analyticsService;
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	StudentsGenerator generator;
+	@Autowired
+	DbTestCreation dbCreation;
+	@MockBean
+	MongoTransactionManager transactionManager;
+
+	@Test
+	@DisplayName("Analytics: sketches percentiles against exact ones on synthetic data")
+	void accuracyTest() {
+		StudentsGenerator.Settings settings = StudentsGenerator.Settings.of(N_STUDENTS);
+		generator.generate(settings);
+		List<StudentDoc> students = studentRepo.findAll();
+		long nMarks = students.stream().mapToLong(s -> s.getMarks().size()).sum();
+		assertEquals(nMarks, analyticsService.rebuildSketches());
+		LocalDate from = settings.fromDate();
+		LocalDate to = from.plusDays(settings.nDays() - 1);
+		LocalDate quarterFrom = from.plusMonths(6);
+		LocalDate quarterTo = YearMonth.from(quarterFrom.plusMonths(2)).atEndOfMonth();
+		for (int i = 0; i < 5; i++) {
+			String subject = StudentsGenerator.getSubject(i);
+			checkPercentiles(students, subject, from, to);
+			checkPercentiles(students, subject, quarterFrom, quarterTo);
+		}
+		assertEquals(settings.nSubjects(), analyticsService.getPercentiles(from, to).size());
+	}
+
+	@Test
+	@DisplayName("Analytics: sketches are updated on adding mark")
+	void addMarkTest() {
+		dbCreation.createDB();
+		analyticsService.rebuildSketches();
+		SubjectPercentiles percentiles = analyticsService.getSubjectPercentiles(DbTestCreation.SUBJECT_1,
+				DbTestCreation.DATE_1, DbTestCreation.DATE_4);
+		assertEquals(5, percentiles.count());
+		String subject = "subject10";
+		assertEquals(new SubjectPercentiles(subject, 0, null, null),
+				analyticsService.getSubjectPercentiles(subject, DbTestCreation.DATE_1, DbTestCreation.DATE_4));
+		studentsService.addMark(DbTestCreation.ID_1, new Mark(subject, DbTestCreation.DATE_4, 90));
+		assertEquals(new SubjectPercentiles(subject, 1, 90.0, 90.0),
+				analyticsService.getSubjectPercentiles(subject, DbTestCreation.DATE_1, DbTestCreation.DATE_4));
+		assertEquals(0, analyticsService.getSubjectPercentiles(subject, DbTestCreation.DATE_1,
+				DbTestCreation.DATE_3).count());
+		assertThrowsExactly(IllegalArgumentException.class, () -> analyticsService.getSubjectQuantile(subject,
+				DbTestCreation.DATE_1, DbTestCreation.DATE_4, 1.5));
+	}
+
+	@Test
+	@DisplayName("Analytics: pending scores folded into the sketches")
+	void foldPendingScoresTest() {
+		dbCreation.createDB();
+		analyticsService.rebuildSketches();
+		assertEquals(0, analyticsService.foldPendingScores());
+		String subject = "subject10";
+		studentsService.addMark(DbTestCreation.ID_1, new Mark(subject, DbTestCreation.DATE_4, 90));
+		studentsService.addMark(DbTestCreation.ID_2, new Mark(subject, DbTestCreation.DATE_4, 70));
+		studentsService.addMark(DbTestCreation.ID_2, new Mark(subject, null, 100));
+		SubjectPercentiles expected = analyticsService.getSubjectPercentiles(subject, DbTestCreation.DATE_1,
+				DbTestCreation.DATE_4);
+		assertEquals(2, expected.count());
+		assertEquals(2, analyticsService.foldPendingScores());
+		assertEquals(0, analyticsService.foldPendingScores());
+		assertEquals(expected,
+				analyticsService.getSubjectPercentiles(subject, DbTestCreation.DATE_1, DbTestCreation.DATE_4));
+	}
+
+	@Test
+	@DisplayName("Analytics: scores added while the sketches are rebuilt aren`t lost")
+	void rebuildWhileAddingTest() throws Exception {
+		dbCreation.createDB();
+		String subject = "subject10";
+		int nMarks = 100;
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		Future<Long> rebuild = executor.submit(() -> analyticsService.rebuildSketches());
+		for (int i = 0; i < nMarks; i++) {
+			studentsService.addMark(DbTestCreation.ID_1, new Mark(subject, DbTestCreation.DATE_4, 90));
+		}
+		rebuild.get();
+		executor.shutdown();
+		// a mark added while the students are read may be counted twice
+		long count = analyticsService.getSubjectPercentiles(subject, DbTestCreation.DATE_1, DbTestCreation.DATE_4)
+				.count();
+		assertTrue(count >= nMarks && count <= 2 * nMarks);
+		assertFalse(mongoTemplate.collectionExists("scores_sketches_rebuild"));
+		assertEquals(DbTestCreation.SUBJECT_1, analyticsService
+				.getPercentiles(DbTestCreation.DATE_1, DbTestCreation.DATE_4).get(0).subject());
+	}
+
+	@Test
+	@Tag("load")
+	@DisplayName("Analytics: latency of sketches percentiles against exact aggregation")
+	void latencyBenchmark() throws IOException {
+		StudentsGenerator.Settings settings = StudentsGenerator.Settings.of(N_STUDENTS_LOAD);
+		generator.generate(settings);
+		analyticsService.rebuildSketches();
+		LatencyReport report = new WorkloadDriver().operation("sketchPercentiles", 1, r -> {
+			LocalDate from = getFrom(settings, r);
+			analyticsService.getSubjectPercentiles(getSubject(settings, r), from, from.plusMonths(6));
+		}).operation("exactPercentiles", 1, r -> {
+			LocalDate from = getFrom(settings, r);
+			getExactPercentiles(getSubject(settings, r), from, from.plusMonths(6));
+		}).run(Mode.CLOSED, 4, Duration.ofSeconds(Long.getLong("load.seconds", 30)), 0);
+		report.print(System.out);
+		report.writeHistograms(Path.of("target", "load-report", "analytics"));
+		assertTrue(report.getCount("sketchPercentiles") > 0);
+	}
+
+	private void checkPercentiles(List<StudentDoc> students, String subject, LocalDate from, LocalDate to) {
+		int[] scores = students.stream().flatMap(s -> s.getMarks().stream())
+				.filter(m -> m.subject().equals(subject) && !m.date().isBefore(from) && !m.date().isAfter(to))
+				.mapToInt(Mark::score).sorted().toArray();
+		SubjectPercentiles percentiles = analyticsService.getSubjectPercentiles(subject, from, to);
+		assertEquals(scores.length, percentiles.count());
+		assertEquals(getQuantile(scores, 0.5), percentiles.median(), SCORE_TOLERANCE);
+		assertEquals(getQuantile(scores, 0.9), percentiles.p90(), SCORE_TOLERANCE);
+		assertEquals(getQuantile(scores, 0.99), analyticsService.getSubjectQuantile(subject, from, to, 0.99),
+				SCORE_TOLERANCE);
+	}
+
+	private double getQuantile(int[] sortedScores, double quantile) {
+		return sortedScores[(int) (quantile * (sortedScores.length - 1))];
+	}
+
+	private double[] getExactPercentiles(String subject, LocalDate from, LocalDate to) {
+		Aggregation pipeline = Aggregation
+				.newAggregation(Aggregation.unwind("marks"),
+						Aggregation.match(Criteria.where("marks.subject").is(subject).and("marks.date").gte(from)
+								.lte(to)),
+						Aggregation.project("marks.score"), Aggregation.sort(Direction.ASC, "score"))
+				.withOptions(AggregationOptions.builder().allowDiskUse(true).build());
+		int[] scores = mongoTemplate.aggregate(pipeline, StudentDoc.class, Document.class).getMappedResults()
+				.stream().mapToInt(d -> d.getInteger("score")).toArray();
+		return scores.length == 0 ? new double[0]
+				: new double[] { getQuantile(scores, 0.5), getQuantile(scores, 0.9) };
+	}
+
+	private String getSubject(StudentsGenerator.Settings settings, Random random) {
+		return StudentsGenerator.getSubject(random.nextInt(settings.nSubjects()));
+	}
+
+	private LocalDate getFrom(StudentsGenerator.Settings settings, Random random) {
+		return settings.fromDate().plusDays(random.nextInt(settings.nDays()));
+	}
+}
@@ -0,0 +1,103 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+//time from the process start to the first served HTTP request (any status)
+//build the artifacts first: mvn package -Pfast-startup -DskipTests [and mvn -Pnative native:compile -DskipTests]
+//then: mvn test -Pload-tests -Dtest=StartupTimeBenchmark [-Dstartup.runs=10]
+@Tag("load")
+class StartupTimeBenchmark {
+	static final Path TARGET = Path.of("target");
+	static final Path JAR = TARGET.resolve(System.getProperty("startup.jar", "students-marks-0.0.1.jar"));
+	// executable Boot jar without AOT - the production baseline
+	static final Path EXEC_JAR = TARGET
+			.resolve(System.getProperty("startup.exec.jar", "students-marks-0.0.1-exec.jar"));
+	static final Path AOT_CLASSES = TARGET.resolve(Path.of("spring-aot", "main", "classes"));
+	static final Path CDS_ARCHIVE = TARGET.resolve("application.jsa");
+	static final Path NATIVE_IMAGE = TARGET.resolve("students-marks");
+	static final int N_RUNS = Integer.getInteger("startup.runs", 5);
+	static final Duration STARTUP_TIMEOUT = Duration.ofSeconds(60);
+	static final String JAVA = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+	HttpClient httpClient = HttpClient.newBuilder().connectTimeout(Duration.ofMillis(100)).build();
+
+	@Test
+	@DisplayName("Startup: time to first request of executable jar, AOT, AOT+CDS and native modes")
+	void startupTimeTest() throws Exception {
+		assumeTrue(Files.exists(JAR) && Files.exists(EXEC_JAR),
+				JAR + " or " + EXEC_JAR + " not found, run mvn package -Pfast-startup");
+		List<String> report = new ArrayList<>();
+		report.add(measure("exec-jar", List.of(JAVA, "-jar", EXEC_JAR.toString())));
+		if (Files.isDirectory(AOT_CLASSES)) {
+			report.add(measure("aot", List.of(JAVA, "-Dspring.aot.enabled=true", "-jar", JAR.toString())));
+		}
+		if (Files.exists(CDS_ARCHIVE)) {
+			report.add(measure("aot+cds", List.of(JAVA, "-XX:SharedArchiveFile=" + CDS_ARCHIVE,
+					"-Dspring.aot.enabled=true", "-jar", JAR.toString())));
+		}
+		if (Files.isExecutable(NATIVE_IMAGE)) {
+			report.add(measure("native", List.of(NATIVE_IMAGE.toString())));
+		}
+		System.out.printf("%-10s %10s %10s %10s%n", "mode", "min ms", "median ms", "max ms");
+		report.forEach(System.out::println);
+	}
+
+	private String measure(String mode, List<String> command) throws Exception {
+		long[] times = new long[N_RUNS];
+		for (int i = 0; i < N_RUNS; i++) {
+			times[i] = timeToFirstRequest(mode, command);
+		}
+		Arrays.sort(times);
+		return String.format("%-10s %10d %10d %10d", mode, times[0], times[N_RUNS / 2], times[N_RUNS - 1]);
+	}
+
+	private long timeToFirstRequest(String mode, List<String> command) throws Exception {
+		int port = getFreePort();
+		List<String> arguments = new ArrayList<>(command);
+		arguments.add("--server.port=" + port);
+		HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/"))
+				.timeout(Duration.ofSeconds(1)).build();
+		long start = System.nanoTime();
+		Process process = new ProcessBuilder(arguments).redirectErrorStream(true)
+				.redirectOutput(TARGET.resolve("startup-" + mode.replace('+', '-') + ".log").toFile()).start();
+		try {
+			while (true) {
+				assertTrue(process.isAlive(), () -> mode + " process exited with code " + process.exitValue());
+				assertTrue(System.nanoTime() - start < STARTUP_TIMEOUT.toNanos(), mode + " startup timeout");
+				try {
+					httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+					return (System.nanoTime() - start) / 1_000_000;
+				} catch (IOException e) {
+					// not listening yet
+					Thread.sleep(5);
+				}
+			}
+		} finally {
+			process.destroy();
+			process.waitFor();
+		}
+	}
+
+	private int getFreePort() throws IOException {
+		try (ServerSocket socket = new ServerSocket(0)) {
+			return socket.getLocalPort();
+		}
+	}
+}
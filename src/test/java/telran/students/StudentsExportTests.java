@@ -0,0 +1,172 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import telran.students.dto.ExportFormat;
+import telran.students.dto.Mark;
+import telran.students.dto.Student;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsExportService;
+
+@SpringBootTest
+class StudentsExportTests {
+	static final long N_STUDENTS_LOAD = Long.getLong("export.students", 1_000_000);
+	// growth of the heap live after GC (young garbage isn`t counted) while exporting
+	static final long MAX_LIVE_HEAP_GROWTH = 64 * 1024 * 1024;
+	static final long HEAP_SAMPLING_MS = 10;
+	@Autowired
+	StudentsExportService exportService;
+	@Autowired
+	DbTestCreation dbCreation;
+	@Autowired
+	StudentsGenerator generator;
+	@Autowired
+	StudentRepo studentRepo;
+	@MockBean
+	MongoTransactionManager transactionManager;
+
+	@Test
+	@DisplayName("Export: NDJSON one line per student with aggregates")
+	void exportNdjsonTest() {
+		dbCreation.createDB();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals(7, exportService.exportStudents(output, ExportFormat.NDJSON, 1));
+		List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+		assertEquals(7, lines.size());
+		assertEquals("{\"id\":1,\"name\":\"name1\",\"phone\":\"050-1234567\",\"marks\":["
+				+ "{\"subject\":\"subject1\",\"date\":\"2023-10-20\",\"score\":80},"
+				+ "{\"subject\":\"subject1\",\"date\":\"2023-11-20\",\"score\":90},"
+				+ "{\"subject\":\"subject2\",\"date\":\"2023-11-20\",\"score\":70}],"
+				+ "\"marksCount\":3,\"sumScores\":240,\"minScore\":70,\"maxScore\":90,\"avgScore\":80.0}", lines.get(0));
+		assertEquals("{\"id\":7,\"name\":\"name7\",\"phone\":\"057-1234567\",\"marks\":[],"
+				+ "\"marksCount\":0,\"sumScores\":0,\"minScore\":null,\"maxScore\":null,\"avgScore\":null}",
+				lines.get(6));
+	}
+
+	@Test
+	@DisplayName("Export: CSV from parallel partitions contains every student once")
+	void exportCsvParallelTest() {
+		dbCreation.createDB();
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		assertEquals(7, exportService.exportStudents(output, ExportFormat.CSV, 3));
+		List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+		assertEquals("id,name,phone,marksCount,sumScores,minScore,maxScore,avgScore,marks", lines.get(0));
+		assertEquals(List.of(1l, 2l, 3l, 4l, 5l, 6l, 7l), lines.stream().skip(1)
+				.map(l -> Long.parseLong(l.substring(0, l.indexOf(',')))).sorted().toList());
+		assertTrue(lines.contains("2,name2,052-1234567,1,70,70,70,70.0,subject3|2023-10-20|70"));
+	}
+
+	@Test
+	@DisplayName("Export: CSV separators inside mark fields are escaped")
+	void exportCsvEscapingTest() {
+		dbCreation.createDB();
+		StudentDoc studentDoc = StudentDoc.of(new Student(8l, "name8", "058-1234567"));
+		studentDoc.addMark(new Mark("a|b;c\\d", LocalDate.parse("2024-01-20"), 50));
+		studentDoc.addMark(new Mark("subject1", LocalDate.parse("2024-01-21"), 60));
+		studentRepo.save(studentDoc);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		exportService.exportStudents(output, ExportFormat.CSV, 1);
+		List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+		assertEquals("8,name8,058-1234567,2,110,50,60,55.0,a\\|b\\;c\\\\d|2024-01-20|50;subject1|2024-01-21|60",
+				lines.get(lines.size() - 1));
+	}
+
+	@Test
+	@DisplayName("Export: mark without date is exported as JSON null and empty CSV field")
+	void exportNoDateTest() {
+		dbCreation.createDB();
+		StudentDoc studentDoc = StudentDoc.of(new Student(8l, "name8", "058-1234567"));
+		studentDoc.addMark(new Mark("subject1", null, 50));
+		studentRepo.save(studentDoc);
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		exportService.exportStudents(output, ExportFormat.NDJSON, 1);
+		List<String> lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+		assertEquals("{\"id\":8,\"name\":\"name8\",\"phone\":\"058-1234567\",\"marks\":["
+				+ "{\"subject\":\"subject1\",\"date\":null,\"score\":50}],"
+				+ "\"marksCount\":1,\"sumScores\":50,\"minScore\":50,\"maxScore\":50,\"avgScore\":50.0}",
+				lines.get(lines.size() - 1));
+		output.reset();
+		exportService.exportStudents(output, ExportFormat.CSV, 1);
+		lines = output.toString(StandardCharsets.UTF_8).lines().toList();
+		assertEquals("8,name8,058-1234567,1,50,50,50,50.0,subject1||50", lines.get(lines.size() - 1));
+	}
+
+	@Test
+	@Tag("load")
+	@DisplayName("Export: 1M students with flat memory")
+	void exportLoadTest() {
+		StudentsGenerator.Settings settings = StudentsGenerator.Settings.of(N_STUDENTS_LOAD);
+		generator.generate(new StudentsGenerator.Settings(settings.nStudents(), 10, settings.marksSkew(),
+				settings.nSubjects(), settings.subjectsSkew(), settings.fromDate(), settings.nDays(), settings.seed()));
+		System.gc();
+		long liveBefore = getLiveHeap();
+		AtomicLong livePeak = new AtomicLong(liveBefore);
+		ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(() -> livePeak.accumulateAndGet(getLiveHeap(), Math::max), 0,
+				HEAP_SAMPLING_MS, TimeUnit.MILLISECONDS);
+		CountingOutputStream output = new CountingOutputStream();
+		long start = System.nanoTime();
+		try {
+			assertEquals(N_STUDENTS_LOAD, exportService.exportStudents(output, ExportFormat.NDJSON, 4));
+		} finally {
+			sampler.shutdownNow();
+		}
+		long growth = livePeak.get() - liveBefore;
+		System.out.printf("exported %d students, %d bytes in %d ms, live heap growth %d MB%n", output.lines,
+				output.bytes, (System.nanoTime() - start) / 1_000_000, growth / 1024 / 1024);
+		assertEquals(N_STUDENTS_LOAD, output.lines);
+		assertTrue(growth < MAX_LIVE_HEAP_GROWTH, () -> String.format("live heap growth %d bytes", growth));
+	}
+
+	// heap used right after the last GC of every heap pool
+	private long getLiveHeap() {
+		return ManagementFactory.getMemoryPoolMXBeans().stream().filter(p -> p.getType() == MemoryType.HEAP)
+				.map(p -> p.getCollectionUsage()).filter(Objects::nonNull).mapToLong(MemoryUsage::getUsed).sum();
+	}
+
+	static class CountingOutputStream extends OutputStream {
+		long bytes;
+		long lines;
+
+		@Override
+		public void write(int b) {
+			bytes++;
+			if (b == '\n') {
+				lines++;
+			}
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			bytes += len;
+			for (int i = off; i < off + len; i++) {
+				if (b[i] == '\n') {
+					lines++;
+				}
+			}
+		}
+	}
+}
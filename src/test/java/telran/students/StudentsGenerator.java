@@ -0,0 +1,110 @@
+package telran.students;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import telran.students.dto.*;
+import telran.students.model.*;
+
+//synthetic students for load tests: ids 1..nStudents, skewed number of marks per student
+//and Zipf distributed subjects
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class StudentsGenerator {
+	static final int BATCH_SIZE = 10_000;
+	final MongoTemplate mongoTemplate;
+
+	public record Settings(long nStudents, int maxMarks, double marksSkew, int nSubjects, double subjectsSkew,
+			LocalDate fromDate, int nDays, long seed) {
+		public static Settings of(long nStudents) {
+			return new Settings(nStudents, 50, 2.0, 20, 1.1, LocalDate.parse("2020-01-01"), 4 * 365, 1);
+		}
+	}
+
+	// generated students replace all the marks, archived ones and sketches of the previous data included
+	public void generate(Settings settings) {
+		mongoTemplate.dropCollection(StudentDoc.class);
+		mongoTemplate.remove(new Query(), ArchivedMarksDoc.class);
+		mongoTemplate.dropCollection(ArchiveJobState.class);
+		mongoTemplate.dropCollection(ScoresSketchDoc.class);
+		Random random = new Random(settings.seed());
+		double[] subjectsWeights = getCumulativeWeights(settings.nSubjects(), settings.subjectsSkew());
+		List<StudentDoc> batch = new ArrayList<>(BATCH_SIZE);
+		long marksCount = 0;
+		for (long id = 1; id <= settings.nStudents(); id++) {
+			StudentDoc studentDoc = getStudent(id, settings, subjectsWeights, random);
+			marksCount += studentDoc.getMarks().size();
+			batch.add(studentDoc);
+			if (batch.size() == BATCH_SIZE) {
+				insert(batch);
+			}
+		}
+		insert(batch);
+		log.info("generated {} students with {} marks", settings.nStudents(), marksCount);
+	}
+
+	public static String getName(long id) {
+		return "name" + id;
+	}
+
+	public static String getPhone(long id) {
+		return String.format("05%d-%07d", id % 10, id % 10_000_000);
+	}
+
+	public static String getSubject(int index) {
+		return "subject" + (index + 1);
+	}
+
+	private void insert(List<StudentDoc> batch) {
+		if (!batch.isEmpty()) {
+			mongoTemplate.bulkOps(BulkMode.UNORDERED, StudentDoc.class).insert(batch).execute();
+			batch.clear();
+		}
+	}
+
+	private StudentDoc getStudent(long id, Settings settings, double[] subjectsWeights, Random random) {
+		StudentDoc res = StudentDoc.of(new Student(id, getName(id), getPhone(id)));
+		// power law: most students have few marks, a few students have many
+		int nMarks = (int) (settings.maxMarks() * Math.pow(random.nextDouble(), settings.marksSkew()));
+		for (int i = 0; i < nMarks; i++) {
+			res.addMark(new Mark(getSubject(getSubjectIndex(subjectsWeights, random)),
+					settings.fromDate().plusDays(random.nextInt(settings.nDays())), getScore(random)));
+		}
+		return res;
+	}
+
+	private int getScore(Random random) {
+		int score = (int) Math.round(75 + 15 * random.nextGaussian());
+		return Math.max(0, Math.min(100, score));
+	}
+
+	private int getSubjectIndex(double[] cumulativeWeights, Random random) {
+		int index = Arrays.binarySearch(cumulativeWeights, random.nextDouble());
+		return index < 0 ? -index - 1 : index;
+	}
+
+	private double[] getCumulativeWeights(int nSubjects, double skew) {
+		double[] res = new double[nSubjects];
+		double sum = 0;
+		for (int i = 0; i < nSubjects; i++) {
+			sum += 1 / Math.pow(i + 1, skew);
+			res[i] = sum;
+		}
+		for (int i = 0; i < nSubjects; i++) {
+			res[i] /= sum;
+		}
+		res[nSubjects - 1] = 1;
+		return res;
+	}
+}
@@ -0,0 +1,119 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.mongodb.MongoTransactionManager;
+
+import telran.students.WorkloadDriver.Mode;
+import telran.students.dto.Mark;
+import telran.students.service.StudentsService;
+
+//run with: mvn test -Pload-tests -Dload.students=1000000 -Dload.threads=64 -Dload.seconds=60
+//operations mix: -Dload.mix=getMarks=40,addMark=10,...  (weight 0 excludes operation)
+@SpringBootTest
+@Tag("load")
+@TestInstance(Lifecycle.PER_CLASS)
+class StudentsLoadTests {
+	static final long N_STUDENTS = Long.getLong("load.students", 100_000);
+	static final int N_THREADS = Integer.getInteger("load.threads", 32);
+	static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.seconds", 30));
+	static final double OPEN_LOOP_RATE = Double.parseDouble(System.getProperty("load.rate", "2000"));
+	static final String DEFAULT_MIX = "getMarks=30,addMark=10,getStudentByPhone=20,getStudentSubjectMarks=20,"
+			+ "getStudentMarksAtDates=15,getBestStudents=1,getWorstStudents=1,getStudentAvgScore=1";
+	static final Path REPORT_DIR = Path.of("target", "load-report");
+	@Autowired
+	StudentsService studentsService;
+	@Autowired
+	StudentsGenerator generator;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	StudentsGenerator.Settings settings = StudentsGenerator.Settings.of(N_STUDENTS);
+
+	@BeforeAll
+	void loadData() {
+		generator.generate(settings);
+	}
+
+	@Test
+	@DisplayName("Load: closed loop mixed workload")
+	void closedLoopTest() throws IOException {
+		LatencyReport report = getDriver().run(Mode.CLOSED, N_THREADS, DURATION, 0);
+		report.print(System.out);
+		report.writeHistograms(REPORT_DIR.resolve("closed"));
+		assertTrue(report.getTotalCount() > 0);
+	}
+
+	@Test
+	@DisplayName("Load: open loop mixed workload at fixed rate")
+	void openLoopTest() throws IOException {
+		LatencyReport report = getDriver().run(Mode.OPEN, N_THREADS, DURATION, OPEN_LOOP_RATE);
+		report.print(System.out);
+		report.writeHistograms(REPORT_DIR.resolve("open"));
+		assertTrue(report.getTotalCount() > 0);
+	}
+
+	private WorkloadDriver getDriver() {
+		Map<String, Integer> mix = getMix();
+		return new WorkloadDriver()
+				.operation("getMarks", mix.get("getMarks"), r -> studentsService.getMarks(getId(r)))
+				.operation("addMark", mix.get("addMark"), r -> studentsService.addMark(getId(r), getMark(r)))
+				.operation("getStudentByPhone", mix.get("getStudentByPhone"),
+						r -> studentsService.getStudentByPhone(StudentsGenerator.getPhone(getId(r))))
+				.operation("getStudentSubjectMarks", mix.get("getStudentSubjectMarks"),
+						r -> studentsService.getStudentSubjectMarks(getId(r), getSubject(r)))
+				.operation("getStudentMarksAtDates", mix.get("getStudentMarksAtDates"), r -> {
+					LocalDate from = getDate(r);
+					studentsService.getStudentMarksAtDates(getId(r), from, from.plusDays(90));
+				})
+				.operation("getBestStudents", mix.get("getBestStudents"), r -> studentsService.getBestStudents(10))
+				.operation("getWorstStudents", mix.get("getWorstStudents"),
+						r -> studentsService.getWorstStudents(10))
+				.operation("getStudentAvgScore", mix.get("getStudentAvgScore"),
+						r -> studentsService.getStudentAvgScore(90));
+	}
+
+	private Map<String, Integer> getMix() {
+		Map<String, Integer> res = parseMix(DEFAULT_MIX);
+		res.putAll(parseMix(System.getProperty("load.mix", "")));
+		return res;
+	}
+
+	private Map<String, Integer> parseMix(String mix) {
+		return Arrays.stream(mix.split(",")).filter(s -> !s.isBlank()).map(s -> s.split("="))
+				.collect(Collectors.toMap(a -> a[0].trim(), a -> Integer.parseInt(a[1].trim())));
+	}
+
+	private long getId(Random random) {
+		return 1 + (long) (random.nextDouble() * settings.nStudents());
+	}
+
+	private String getSubject(Random random) {
+		return StudentsGenerator.getSubject(random.nextInt(settings.nSubjects()));
+	}
+
+	private LocalDate getDate(Random random) {
+		return settings.fromDate().plusDays(random.nextInt(settings.nDays()));
+	}
+
+	private Mark getMark(Random random) {
+		return new Mark(getSubject(random), getDate(random), random.nextInt(101));
+	}
+}
@@ -0,0 +1,39 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.aop.framework.AopProxyUtils;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.data.projection.TargetAware;
+
+import telran.students.configuration.StudentsRuntimeHints;
+import telran.students.dto.*;
+
+class StudentsRuntimeHintsTests {
+	RuntimeHints hints = new RuntimeHints();
+
+	@Test
+	@DisplayName("Native hints: proxies for repository projections")
+	void projectionsProxiesTest() {
+		new StudentsRuntimeHints().registerHints(hints, getClass().getClassLoader());
+		for (Class<?> projection : new Class<?>[] { IdName.class, IdNamePhone.class, MarksOnly.class }) {
+			assertTrue(RuntimeHintsPredicates.proxies()
+					.forInterfaces(AopProxyUtils.completeJdkProxyInterfaces(projection, TargetAware.class))
+					.test(hints));
+		}
+	}
+
+	@Test
+	@DisplayName("Native hints: reflection for records")
+	void recordsReflectionTest() {
+		new StudentsRuntimeHints().registerHints(hints, getClass().getClassLoader());
+		assertTrue(RuntimeHintsPredicates.reflection().onType(Mark.class)
+				.withMemberCategory(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS).test(hints));
+		assertTrue(RuntimeHintsPredicates.reflection().onType(MarksSummary.class)
+				.withMemberCategory(MemberCategory.DECLARED_FIELDS).test(hints));
+	}
+}
@@ -13,14 +13,19 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import telran.exceptions.NotFoundException;
 import telran.students.dto.Mark;
 import telran.students.dto.NameAvgScore;
 import telran.students.dto.Student;
+import telran.students.dto.StudentDashboard;
 import telran.students.model.StudentDoc;
 import telran.students.repo.StudentRepo;
+import telran.students.service.StudentsNameIndex;
 import telran.students.service.StudentsService;
+import telran.students.service.TrigramIndex;
 
 @SpringBootTest
 class StudentsServiceTests {
@@ -35,6 +40,10 @@ class StudentsServiceTests {
 	StudentRepo studentsRepo;
 	@Autowired
 	DbTestCreation dbCreation;
+	@Autowired
+	StudentsNameIndex studentsNameIndex;
+	@Autowired
+	MongoTemplate mongoTemplate;
 	@MockBean
 	MongoTransactionManager transactionManager;
 
@@ -232,6 +241,65 @@ class StudentsServiceTests {
 		
 		
 	}
+
+	@Test
+	@DisplayName("Service: get student dashboard")
+	void getStudentDashboardTest() {
+		assertEquals(new StudentDashboard(dbCreation.getStudent(ID_1), List.of(dbCreation.getStudentMarks(ID_1)),
+				80.0, 3), studentsService.getStudentDashboard(ID_1));
+		assertEquals(5, studentsService.getStudentDashboard(DbTestCreation.ID_5).rank());
+		assertEquals(new StudentDashboard(dbCreation.getStudent(DbTestCreation.ID_7), List.of(), null, 0),
+				studentsService.getStudentDashboard(DbTestCreation.ID_7));
+		assertThrowsExactly(NotFoundException.class, () -> studentsService.getStudentDashboard(ID_8));
+	}
+
+	@Test
+	@DisplayName("Service: find students by name part")
+	void findStudentsByNameTest() {
+		assertIterableEquals(List.of(dbCreation.getStudent(ID_1)), studentsService.findStudentsByName("NAME1", 10));
+		assertIterableEquals(List.of(dbCreation.getStudent(1), dbCreation.getStudent(2), dbCreation.getStudent(3)),
+				studentsService.findStudentsByName("am", 3));
+		Student student = new Student(ID_8, "José Müller", "058-1234567");
+		studentsService.addStudent(student);
+		assertIterableEquals(List.of(student), studentsService.findStudentsByName("jose mu", 10));
+		assertIterableEquals(List.of(student), studentsService.findStudentsByName("MULLER", 10));
+		studentsService.removeStudent(ID_8);
+		assertTrue(studentsService.findStudentsByName("muller", 10).isEmpty());
+		assertThrowsExactly(IllegalArgumentException.class, () -> studentsService.findStudentsByName("name", 0));
+	}
+
+	@Test
+	@DisplayName("Service: name search skips removed students and finds the live ones")
+	void findStudentsByNameStaleIndexTest() {
+		List<Student> expected = List.of(dbCreation.getStudent(1), dbCreation.getStudent(3),
+				dbCreation.getStudent(4));
+		// students 2 and 7 are deleted
+		studentsService.getStudentsFewMarks(2);
+		assertTrue(studentsNameIndex.search("name2", 10).isEmpty());
+		assertIterableEquals(expected, studentsService.findStudentsByName("name", 3));
+		// exact matches of students not existing in the collection are the best hits
+		for (long id = 100; id < 103; id++) {
+			studentsNameIndex.add(id, "name");
+		}
+		assertIterableEquals(expected, studentsService.findStudentsByName("name", 3));
+	}
+
+	@Test
+	@DisplayName("Service: name search scans the collection until the index is built")
+	void nameSearchNotBuiltIndexTest() {
+		StudentsNameIndex notBuiltIndex = new StudentsNameIndex(mongoTemplate);
+		ReflectionTestUtils.setField(notBuiltIndex, "scanLimit", 7);
+		for (String namePart : List.of("NAME1", "am", "e7", "xyz")) {
+			assertIterableEquals(studentsNameIndex.search(namePart, 3), notBuiltIndex.search(namePart, 3));
+		}
+		assertThrowsExactly(IllegalArgumentException.class, () -> notBuiltIndex.search("name", 0));
+		// only the first scanLimit students by id are scanned
+		ReflectionTestUtils.setField(notBuiltIndex, "scanLimit", 3);
+		assertEquals(List.of(1l, 2l, 3l),
+				notBuiltIndex.search("name", 10).stream().map(TrigramIndex.Hit::id).toList());
+		assertTrue(notBuiltIndex.search("name7", 10).isEmpty());
+		assertEquals(1, studentsNameIndex.search("name7", 10).size());
+	}
 	}
 
 
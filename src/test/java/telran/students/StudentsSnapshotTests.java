@@ -0,0 +1,167 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+
+import org.bson.Document;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.query.Query;
+
+import telran.students.dto.Mark;
+import telran.students.dto.MarksSummary;
+import telran.students.dto.SnapshotInfo;
+import telran.students.dto.Student;
+import telran.students.dto.SubjectPercentiles;
+import telran.students.model.StudentDoc;
+import telran.students.repo.StudentRepo;
+import telran.students.model.ArchiveJobState;
+import telran.students.model.ArchivedMarksDoc;
+import telran.students.model.ScoresSketchDoc;
+import telran.students.service.MarksArchiveService;
+import telran.students.service.ScoresAnalyticsService;
+import telran.students.service.StudentsSnapshotService;
+
+@SpringBootTest
+class StudentsSnapshotTests {
+	static final long N_STUDENTS = 5_000;
+	static final String PHONE_INDEX = "phone_index";
+	static final StudentsGenerator.Settings SETTINGS = StudentsGenerator.Settings.of(N_STUDENTS);
+	@Autowired
+	StudentsSnapshotService snapshotService;
+	@Autowired
+	StudentsGenerator generator;
+	@Autowired
+	MarksArchiveService archiveService;
+	@Autowired
+	ScoresAnalyticsService analyticsService;
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	@TempDir
+	Path dir;
+
+	record StudentMarks(Student student, List<Mark> marks, List<MarksSummary> summaries, long archiveSeq) {
+	}
+
+	record ArchivedMarks(String id, long studentId, long seq, List<Mark> marks) {
+	}
+
+	@BeforeEach
+	void setUp() {
+		generator.generate(SETTINGS);
+		mongoTemplate.indexOps(StudentDoc.class)
+				.ensureIndex(new Index("phone", Direction.ASC).unique().named(PHONE_INDEX));
+	}
+
+	@Test
+	@DisplayName("Snapshot: restored collection equals the dumped one")
+	void dumpRestoreTest() {
+		// summaries and archive sequences are a part of the snapshot
+		LocalDate horizon = SETTINGS.fromDate().plusYears(2);
+		archiveService.archiveMarks(horizon);
+		List<StudentMarks> expected = getAll();
+		List<ArchivedMarks> expectedArchive = getArchive();
+		assertFalse(expectedArchive.isEmpty());
+		long nScores = analyticsService.rebuildSketches();
+		assertTrue(expected.stream().anyMatch(s -> s.archiveSeq() > 0 && !s.summaries().isEmpty()));
+		SnapshotInfo dumpInfo = snapshotService.dump(dir, 4);
+		assertEquals(new SnapshotInfo(4, N_STUDENTS, dumpInfo.bytes()), dumpInfo);
+		assertEquals(N_STUDENTS, snapshotService.getProgress().processed());
+		mongoTemplate.dropCollection(StudentDoc.class);
+		mongoTemplate.dropCollection(ScoresSketchDoc.class);
+		mongoTemplate.dropCollection(ArchivedMarksDoc.class);
+		mongoTemplate.dropCollection(ArchiveJobState.class);
+		assertEquals(dumpInfo, snapshotService.restore(dir, 3));
+		assertEquals(1.0, snapshotService.getProgress().ratio());
+		assertIterableEquals(expected, getAll());
+		assertIterableEquals(expectedArchive, getArchive());
+		assertEquals(horizon, archiveService.getHorizon());
+		IndexInfo phoneIndex = mongoTemplate.indexOps(StudentDoc.class).getIndexInfo().stream()
+				.filter(i -> i.getName().equals(PHONE_INDEX)).findFirst().orElse(null);
+		assertNotNull(phoneIndex);
+		assertTrue(phoneIndex.isUnique());
+		assertEquals(nScores, getSketchesCount());
+	}
+
+	@Test
+	@DisplayName("Snapshot: snapshot without marks archive is rejected if students have archived marks")
+	void snapshotWithoutArchiveTest() throws IOException {
+		SnapshotInfo dumpInfo = snapshotService.dump(dir, 2);
+		removeArchiveFromManifest();
+		// nothing is archived yet
+		assertEquals(dumpInfo, snapshotService.restore(dir, 2));
+		archiveService.archiveMarks(SETTINGS.fromDate().plusYears(2));
+		snapshotService.dump(dir, 2);
+		removeArchiveFromManifest();
+		assertThrowsExactly(IllegalStateException.class, () -> snapshotService.restore(dir, 2));
+		assertEquals(N_STUDENTS, studentRepo.count());
+		assertTrue(mongoTemplate.count(new Query(), ArchivedMarksDoc.class) > 0);
+	}
+
+	@Test
+	@DisplayName("Snapshot: corrupted file is rejected before the collection is dropped")
+	void corruptedSnapshotTest() throws IOException {
+		snapshotService.dump(dir, 2);
+		try (FileChannel channel = FileChannel.open(dir.resolve("students-001.snap"), StandardOpenOption.READ,
+				StandardOpenOption.WRITE)) {
+			ByteBuffer buffer = ByteBuffer.allocate(1);
+			long position = channel.size() / 2;
+			channel.read(buffer, position);
+			buffer.put(0, (byte) (buffer.get(0) ^ 0xff));
+			buffer.rewind();
+			channel.write(buffer, position);
+		}
+		assertThrowsExactly(IllegalStateException.class, () -> snapshotService.restore(dir, 2));
+		assertEquals(N_STUDENTS, studentRepo.count());
+	}
+
+	private long getSketchesCount() {
+		return analyticsService
+				.getPercentiles(SETTINGS.fromDate(), SETTINGS.fromDate().plusDays(SETTINGS.nDays())).stream()
+				.mapToLong(SubjectPercentiles::count).sum();
+	}
+
+	// as the manifest written before the marks archive was a part of the snapshot
+	private void removeArchiveFromManifest() throws IOException {
+		Path manifestPath = dir.resolve("manifest.json");
+		Document manifest = Document.parse(Files.readString(manifestPath));
+		manifest.remove("archive");
+		manifest.remove("archivedHorizon");
+		Files.writeString(manifestPath, manifest.toJson());
+	}
+
+	private List<ArchivedMarks> getArchive() {
+		return mongoTemplate.find(new Query().with(Sort.by("id")), ArchivedMarksDoc.class).stream()
+				.map(doc -> new ArchivedMarks(doc.getId(), doc.getStudentId(), doc.getSeq(), doc.getMarks()))
+				.toList();
+	}
+
+	private List<StudentMarks> getAll() {
+		return studentRepo.findAll(Sort.by("id")).stream()
+				.map(doc -> new StudentMarks(doc.build(), doc.getMarks(), doc.getSummaries(), doc.getArchiveSeq()))
+				.toList();
+	}
+}
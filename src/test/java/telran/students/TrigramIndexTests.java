@@ -0,0 +1,199 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import telran.students.WorkloadDriver.Mode;
+import telran.students.service.TrigramIndex;
+import telran.students.service.TrigramIndex.Hit;
+
+class TrigramIndexTests {
+	static final int N_NAMES = 50_000;
+	static final int N_NAMES_LOAD = Integer.getInteger("names.count", 1_000_000);
+	static final int LIMIT = 20;
+	static final String[] SYLLABLES = { "an", "na", "jo", "sé", "se", "mü", "mu", "ller", "ré", "ka", "ol", "ví",
+			"dan", "el", "ie", "ra", "chel", "ber", "gö", "tz", "ña", "ri" };
+
+	@Test
+	@DisplayName("Names index: normalization and ranking")
+	void rankingTest() {
+		TrigramIndex index = new TrigramIndex();
+		index.add(1, "José Müller");
+		index.add(2, "Jose");
+		index.add(3, "Mary-Josephine");
+		index.add(4, "Ajose Smith");
+		index.add(5, "JOSÉPHINE");
+		assertEquals("jose muller", TrigramIndex.normalize("JOSÉ MÜLLER"));
+		assertIterableEquals(List.of(2l, 1l, 5l, 3l, 4l), getIds(index.search("josé", LIMIT)));
+		assertIterableEquals(List.of(TrigramIndex.EXACT, TrigramIndex.PREFIX, TrigramIndex.PREFIX,
+				TrigramIndex.WORD_PREFIX, TrigramIndex.SUBSTRING),
+				index.search("jose", LIMIT).stream().map(Hit::rank).toList());
+		assertIterableEquals(List.of(2l, 1l), getIds(index.search("JO", 2)));
+		assertIterableEquals(List.of(1l), getIds(index.search("mull", LIMIT)));
+		assertTrue(index.search("xyz", LIMIT).isEmpty());
+		assertTrue(index.search("", LIMIT).isEmpty());
+		assertThrowsExactly(IllegalArgumentException.class, () -> index.search("jose", 0));
+	}
+
+	@Test
+	@DisplayName("Names index: adding, replacing and removing names")
+	void updateTest() {
+		TrigramIndex index = new TrigramIndex();
+		index.add(1, "Anna");
+		index.add(2, "Hana");
+		index.add(1, "Dana");
+		assertEquals(2, index.size());
+		assertIterableEquals(List.of(1l, 2l), getIds(index.search("ana", LIMIT)));
+		assertTrue(index.remove(2));
+		assertFalse(index.remove(2));
+		assertTrue(index.search("hana", LIMIT).isEmpty());
+		index.compact();
+		assertEquals(1, index.size());
+		assertIterableEquals(List.of(1l), getIds(index.search("dana", LIMIT)));
+		index.add(3, "Danah");
+		assertIterableEquals(List.of(1l, 3l), getIds(index.search("dan", LIMIT)));
+	}
+
+	@Test
+	@DisplayName("Names index: search results equal to brute force scan")
+	void bruteForceEquivalenceTest() {
+		Random random = new Random(1);
+		TrigramIndex index = new TrigramIndex();
+		Map<Long, String> names = new HashMap<>();
+		for (long id = 1; id <= N_NAMES; id++) {
+			String name = getName(random);
+			names.put(id, name);
+			index.add(id, name);
+		}
+		// enough removed names to renumber the documents
+		for (long id = 1; id <= N_NAMES; id += random.nextInt(2) + 1) {
+			names.remove(id);
+			index.remove(id);
+		}
+		for (long id = N_NAMES; id > N_NAMES - 1000; id--) {
+			String name = getName(random);
+			names.put(id, name);
+			index.add(id, name);
+		}
+		assertEquals(names.size(), index.size());
+		for (int i = 0; i < 500; i++) {
+			if (i == 250) {
+				index.compact();
+			}
+			String query = getQuery(random);
+			assertIterableEquals(bruteForceSearch(names, query, LIMIT), index.search(query, LIMIT), query);
+		}
+	}
+
+	@Test
+	@Tag("load")
+	@DisplayName("Names index: latency and memory at 1M names against brute force scan")
+	void latencyMemoryBenchmark() throws IOException {
+		Random random = new Random(1);
+		MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+		String[] names = new String[N_NAMES_LOAD];
+		for (int i = 0; i < N_NAMES_LOAD; i++) {
+			names[i] = getName(random);
+		}
+		System.gc();
+		long heapBefore = memory.getHeapMemoryUsage().getUsed();
+		long start = System.nanoTime();
+		TrigramIndex index = new TrigramIndex();
+		for (int i = 0; i < N_NAMES_LOAD; i++) {
+			index.add(i + 1, names[i]);
+		}
+		index.compact();
+		long buildMillis = (System.nanoTime() - start) / 1_000_000;
+		System.gc();
+		long indexBytes = memory.getHeapMemoryUsage().getUsed() - heapBefore;
+		String[] normalized = new String[N_NAMES_LOAD];
+		for (int i = 0; i < N_NAMES_LOAD; i++) {
+			normalized[i] = TrigramIndex.normalize(names[i]);
+		}
+		LatencyReport report = new WorkloadDriver()
+				.operation("indexSearch", 1, r -> index.search(getQuery(r), LIMIT))
+				.operation("scanSearch", 1, r -> scan(normalized, TrigramIndex.normalize(getQuery(r))))
+				.run(Mode.CLOSED, 4, Duration.ofSeconds(Long.getLong("load.seconds", 30)), 0);
+		report.print(System.out);
+		report.writeHistograms(Path.of("target", "load-report", "names"));
+		System.out.printf("names %d, build %d ms, index heap %d bytes (%d bytes per name)%n", N_NAMES_LOAD,
+				buildMillis, indexBytes, indexBytes / N_NAMES_LOAD);
+		assertTrue(report.getCount("indexSearch") > 0);
+	}
+
+	private List<Hit> bruteForceSearch(Map<Long, String> names, String query, int limit) {
+		String normalizedQuery = TrigramIndex.normalize(query);
+		return names.entrySet().stream().map(e -> {
+			String name = TrigramIndex.normalize(e.getValue());
+			Hit res = null;
+			if (name.contains(normalizedQuery)) {
+				int rank = TrigramIndex.SUBSTRING;
+				if (name.equals(normalizedQuery)) {
+					rank = TrigramIndex.EXACT;
+				} else if (name.startsWith(normalizedQuery)) {
+					rank = TrigramIndex.PREFIX;
+				} else {
+					for (int i = 1; i < name.length(); i++) {
+						if (!Character.isLetterOrDigit(name.charAt(i - 1)) && name.startsWith(normalizedQuery, i)) {
+							rank = TrigramIndex.WORD_PREFIX;
+						}
+					}
+				}
+				res = new Hit(e.getKey(), name, rank);
+			}
+			return res;
+		}).filter(Objects::nonNull).sorted((h1, h2) -> h1.rank() != h2.rank() ? h1.rank() - h2.rank()
+				: !h1.name().equals(h2.name()) ? h1.name().compareTo(h2.name()) : Long.compare(h1.id(), h2.id()))
+				.limit(limit).toList();
+	}
+
+	private int scan(String[] normalized, String query) {
+		int res = 0;
+		for (String name : normalized) {
+			if (name.contains(query)) {
+				res++;
+			}
+		}
+		return res;
+	}
+
+	private List<Long> getIds(List<Hit> hits) {
+		return hits.stream().map(Hit::id).toList();
+	}
+
+	private String getName(Random random) {
+		return capitalize(getWord(random, 1 + random.nextInt(3))) + " "
+				+ capitalize(getWord(random, 2 + random.nextInt(3)));
+	}
+
+	private String getQuery(Random random) {
+		String res = getWord(random, 1 + random.nextInt(3));
+		return random.nextBoolean() ? res.toUpperCase() : res;
+	}
+
+	private String getWord(Random random, int nSyllables) {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < nSyllables; i++) {
+			builder.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+		}
+		return builder.toString();
+	}
+
+	private String capitalize(String word) {
+		return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+	}
+}
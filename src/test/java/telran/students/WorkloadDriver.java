@@ -0,0 +1,140 @@
+package telran.students;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import org.HdrHistogram.Histogram;
+
+import lombok.extern.slf4j.Slf4j;
+
+//runs a weighted mix of operations from many threads
+//CLOSED - every thread starts next operation as soon as the previous one is done
+//OPEN - operations are started at a fixed total rate; latency is counted from the intended start
+//so that a slow response doesn`t hide the requests queued behind it (coordinated omission)
+@Slf4j
+public class WorkloadDriver {
+	static final long HIGHEST_TRACKABLE_LATENCY = TimeUnit.MINUTES.toNanos(1);
+	static final int SIGNIFICANT_DIGITS = 3;
+
+	public enum Mode {
+		CLOSED, OPEN
+	}
+
+	@FunctionalInterface
+	public interface Operation {
+		void execute(Random random);
+	}
+
+	record WeightedOperation(String name, int weight, Operation operation) {
+	}
+
+	private final List<WeightedOperation> operations = new ArrayList<>();
+	private int totalWeight;
+	private ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+	public WorkloadDriver operation(String name, int weight, Operation operation) {
+		if (weight > 0) {
+			operations.add(new WeightedOperation(name, weight, operation));
+			totalWeight += weight;
+		}
+		return this;
+	}
+
+	// threads of the clients, e.g. virtual threads for thousands of clients
+	public WorkloadDriver threadFactory(ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+		return this;
+	}
+
+	public LatencyReport run(Mode mode, int nThreads, Duration duration, double targetRate) {
+		if (operations.isEmpty()) {
+			throw new IllegalStateException("no operations with positive weight");
+		}
+		if (mode == Mode.OPEN && targetRate <= 0) {
+			throw new IllegalArgumentException("open loop requires positive target rate");
+		}
+		log.info("running {} loop, threads {}, duration {}, rate {}", mode, nThreads, duration, targetRate);
+		Map<String, LongAdder> errors = new ConcurrentHashMap<>();
+		long interval = mode == Mode.OPEN ? (long) (TimeUnit.SECONDS.toNanos(1) * nThreads / targetRate) : 0;
+		long start = System.nanoTime();
+		long end = start + duration.toNanos();
+		List<Callable<Map<String, Histogram>>> workers = new ArrayList<>();
+		for (int i = 0; i < nThreads; i++) {
+			long firstStart = start + i * interval / nThreads;
+			long seed = i;
+			workers.add(() -> work(mode, firstStart, interval, end, new Random(seed), errors));
+		}
+		Map<String, Histogram> histograms = new HashMap<>();
+		ExecutorService executor = Executors.newFixedThreadPool(nThreads, threadFactory);
+		try {
+			for (Future<Map<String, Histogram>> future : executor.invokeAll(workers)) {
+				future.get().forEach((name, histogram) -> histograms
+						.computeIfAbsent(name, n -> new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS))
+						.add(histogram));
+			}
+		} catch (Exception e) {
+			throw new IllegalStateException("workload failed", e);
+		} finally {
+			executor.shutdownNow();
+		}
+		Map<String, Long> errorsCount = new HashMap<>();
+		errors.forEach((name, count) -> errorsCount.put(name, count.sum()));
+		return new LatencyReport(histograms, errorsCount, Duration.ofNanos(System.nanoTime() - start));
+	}
+
+	private Map<String, Histogram> work(Mode mode, long firstStart, long interval, long end, Random random,
+			Map<String, LongAdder> errors) {
+		Map<String, Histogram> histograms = new HashMap<>();
+		long intended = firstStart;
+		while (true) {
+			long begin;
+			if (mode == Mode.OPEN) {
+				begin = intended;
+				intended += interval;
+				long now = System.nanoTime();
+				if (begin > now) {
+					LockSupport.parkNanos(begin - now);
+				}
+			} else {
+				begin = System.nanoTime();
+			}
+			if (begin >= end) {
+				break;
+			}
+			WeightedOperation operation = getOperation(random);
+			try {
+				operation.operation().execute(random);
+			} catch (RuntimeException e) {
+				errors.computeIfAbsent(operation.name(), n -> new LongAdder()).increment();
+			}
+			long latency = System.nanoTime() - begin;
+			histograms.computeIfAbsent(operation.name(),
+					n -> new Histogram(HIGHEST_TRACKABLE_LATENCY, SIGNIFICANT_DIGITS))
+					.recordValue(Math.min(latency, HIGHEST_TRACKABLE_LATENCY));
+		}
+		return histograms;
+	}
+
+	private WeightedOperation getOperation(Random random) {
+		int value = random.nextInt(totalWeight);
+		int index = 0;
+		while (value >= operations.get(index).weight()) {
+			value -= operations.get(index).weight();
+			index++;
+		}
+		return operations.get(index);
+	}
+}
@@ -0,0 +1,152 @@
+package telran.students;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryType;
+import java.lang.management.MemoryUsage;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Objects;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.TestInstance.Lifecycle;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import telran.students.WorkloadDriver.Mode;
+import telran.students.repo.StudentRepo;
+import telran.students.service.*;
+
+//run with: mvn test -Pvirtual-threads,load-tests -Dtest=VirtualThreadsBenchmark
+//[-Dload.students=20000 -Dload.clients=5000 -Dload.pool=200 -Dload.seconds=30]
+//every client is a virtual thread sending requests to the "server" executor one by one:
+//platform - fixed pool of platform threads (as Tomcat max threads) with sequential queries,
+//virtual - virtual thread per request with concurrent independent queries;
+//memory per in-flight request is the peak growth of the heap live after GC (young garbage isn`t counted)
+//over the live heap before the run divided by the clients (every client has one request in flight)
+@SpringBootTest
+@Tag("load")
+@TestInstance(Lifecycle.PER_CLASS)
+class VirtualThreadsBenchmark {
+	static final long N_STUDENTS = Long.getLong("load.students", 20_000);
+	static final int N_CLIENTS = Integer.getInteger("load.clients", 5_000);
+	static final int PLATFORM_POOL_SIZE = Integer.getInteger("load.pool", 200);
+	static final Duration DURATION = Duration.ofSeconds(Long.getLong("load.seconds", 30));
+	static final long HEAP_SAMPLING_MS = 50;
+	static final Path REPORT_DIR = Path.of("target", "load-report", "threads");
+	@Autowired
+	StudentRepo studentRepo;
+	@Autowired
+	MongoTemplate mongoTemplate;
+	@Autowired
+	MarksArchiveService marksArchiveService;
+	@Autowired
+	ApplicationEventPublisher eventPublisher;
+	@Autowired
+	StudentsNameIndex studentsNameIndex;
+	@Autowired
+	StudentsGenerator generator;
+	@MockBean
+	MongoTransactionManager transactionManager;
+	StudentsGenerator.Settings settings = StudentsGenerator.Settings.of(N_STUDENTS);
+
+	@BeforeAll
+	void loadData() {
+		generator.generate(settings);
+	}
+
+	@Test
+	@DisplayName("Threads: platform threads pool, sequential queries")
+	void platformThreadsTest() throws IOException {
+		run("platform", Executors.newFixedThreadPool(PLATFORM_POOL_SIZE), new SequentialQueryExecutor());
+	}
+
+	@Test
+	@DisplayName("Threads: virtual thread per request, concurrent queries")
+	void virtualThreadsTest() throws IOException {
+		run("virtual", Executors.newVirtualThreadPerTaskExecutor(), new StructuredQueryExecutor());
+	}
+
+	private void run(String name, ExecutorService server, QueryExecutor queryExecutor) throws IOException {
+		StudentsService studentsService = new StudentsServiceImpl(studentRepo, mongoTemplate, marksArchiveService,
+				eventPublisher, queryExecutor, studentsNameIndex);
+		System.gc();
+		long liveBefore = getLiveHeap();
+		AtomicLong livePeak = new AtomicLong(liveBefore);
+		AtomicInteger threadsPeak = new AtomicInteger();
+		ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+		sampler.scheduleAtFixedRate(() -> {
+			livePeak.accumulateAndGet(getLiveHeap(), Math::max);
+			threadsPeak.accumulateAndGet(ManagementFactory.getThreadMXBean().getThreadCount(), Math::max);
+		}, 0, HEAP_SAMPLING_MS, TimeUnit.MILLISECONDS);
+		LatencyReport report;
+		try (server) {
+			report = new WorkloadDriver().threadFactory(Thread.ofVirtual().factory())
+					.operation("getStudentDashboard", 10,
+							r -> call(server, () -> studentsService.getStudentDashboard(getId(r))))
+					.operation("getStudentSubjectMarks", 45,
+							r -> call(server, () -> studentsService.getStudentSubjectMarks(getId(r), getSubject(r))))
+					.operation("getStudentMarksAtDates", 45, r -> {
+						LocalDate from = getDate(r);
+						call(server, () -> studentsService.getStudentMarksAtDates(getId(r), from, from.plusDays(90)));
+					}).run(Mode.CLOSED, N_CLIENTS, DURATION, 0);
+		} finally {
+			sampler.shutdownNow();
+		}
+		report.print(System.out);
+		report.writeHistograms(REPORT_DIR.resolve(name));
+		System.out.printf("%s: clients %d, throughput %.1f ops/s, peak platform threads %d, "
+				+ "live heap per in-flight request %d bytes%n", name, N_CLIENTS, report.getTotalThroughput(),
+				threadsPeak.get(), (livePeak.get() - liveBefore) / N_CLIENTS);
+		assertTrue(report.getTotalCount() > 0);
+	}
+
+	// heap used right after the last GC of every heap pool
+	private long getLiveHeap() {
+		return ManagementFactory.getMemoryPoolMXBeans().stream().filter(p -> p.getType() == MemoryType.HEAP)
+				.map(p -> p.getCollectionUsage()).filter(Objects::nonNull).mapToLong(MemoryUsage::getUsed).sum();
+	}
+
+	private <T> T call(ExecutorService server, Callable<T> request) {
+		try {
+			return server.submit(request).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException(e);
+		} catch (ExecutionException e) {
+			throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+		}
+	}
+
+	private long getId(Random random) {
+		return 1 + (long) (random.nextDouble() * settings.nStudents());
+	}
+
+	private String getSubject(Random random) {
+		return StudentsGenerator.getSubject(random.nextInt(settings.nSubjects()));
+	}
+
+	private LocalDate getDate(Random random) {
+		return settings.fromDate().plusDays(random.nextInt(settings.nDays()));
+	}
+}